@@ -0,0 +1,32 @@
+package com.tn.maktba;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the full application for benchmarks that need real beans and a database. Runs against an
+ * in-memory H2 database unless {@code SPRING_DATASOURCE_URL} is set, in which case the datasource
+ * comes from the environment (e.g. a local PostgreSQL).
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        args.add("--logging.level.root=WARN");
+        if (System.getenv("SPRING_DATASOURCE_URL") == null) {
+            args.add("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+            args.add("--spring.datasource.username=sa");
+            args.add("--spring.datasource.password=");
+        }
+        args.addAll(List.of(properties));
+        return new SpringApplicationBuilder(MaktbaApplication.class).run(args.toArray(String[]::new));
+    }
+}
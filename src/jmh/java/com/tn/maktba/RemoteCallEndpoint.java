@@ -0,0 +1,31 @@
+package com.tn.maktba;
+
+import com.tn.maktba.repository.CategoryRepository;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Benchmark-only endpoint shaped like an image upload or SMS send: a blocking call to a slow external
+ * service followed by a short database read. The remote call comes first because open-in-view keeps
+ * a request's connection from its first query until the response is written, so a call made after a
+ * query would hold a pooled connection for its whole duration. Only present in the JMH jar.
+ */
+@RestController
+public class RemoteCallEndpoint {
+
+    static final String PATH = "/api/benchmark/remote-call";
+    private static final long REMOTE_LATENCY_MILLIS = 50;
+
+    private final CategoryRepository categoryRepository;
+
+    public RemoteCallEndpoint(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    @GetMapping(PATH)
+    public ResponseEntity<?> remoteCall() throws InterruptedException {
+        Thread.sleep(REMOTE_LATENCY_MILLIS);
+        return ResponseEntity.ok(categoryRepository.count());
+    }
+}
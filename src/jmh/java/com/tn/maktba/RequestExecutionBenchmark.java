@@ -0,0 +1,68 @@
+package com.tn.maktba;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing the platform-thread and virtual-thread request execution modes. Drives more
+ * concurrent clients than Tomcat has platform worker threads against two endpoints: a plain
+ * database read, and {@link RemoteCallEndpoint}, which adds a blocking call standing in for
+ * Cloudinary or Twilio. Throughput mode reports requests per second; sample mode reports the
+ * latency percentiles, including p0.99. Pinning diagnostics are on in virtual-thread mode, so any
+ * pinned request is logged during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(400)
+public class RequestExecutionBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest databaseRead;
+    private HttpRequest remoteCall;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--diagnostics.virtual-threads.pinning.enabled=" + virtualThreads);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        databaseRead = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/categories")).build();
+        remoteCall = HttpRequest.newBuilder(URI.create("http://localhost:" + port + RemoteCallEndpoint.PATH)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int databaseRead() throws Exception {
+        return send(databaseRead);
+    }
+
+    @Benchmark
+    public int remoteCall() throws Exception {
+        return send(remoteCall);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
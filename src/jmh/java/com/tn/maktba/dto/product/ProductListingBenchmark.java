@@ -0,0 +1,72 @@
+package com.tn.maktba.dto.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.model.product.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a page of products to DTOs and serializes the listing response, the two CPU-bound steps of
+ * {@code GET /api/products} once the rows are loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductListingBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private final ProductDTOMapper productDTOMapper = new ProductDTOMapper();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private List<Product> products;
+    private ProductPageDTO page;
+
+    @Setup
+    public void setUp() {
+        Category category = Category.builder().id(1L).name("Books").build();
+        products = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            products.add(Product.builder()
+                    .id(id)
+                    .name("Cahier 96 pages " + id)
+                    .description("Cahier grand format, 96 pages, reliure piquée, papier 90g.")
+                    .level("Primary")
+                    .price(new BigDecimal("4.50"))
+                    .publisher("Maktba")
+                    .quantity(120)
+                    .imageURL("https://res.cloudinary.com/maktba/image/upload/v1/products/" + id + ".jpg")
+                    .category(category)
+                    .build());
+        }
+        page = listing(products.stream().map(productDTOMapper).toList());
+    }
+
+    @Benchmark
+    public List<ProductDTO> mapProducts() {
+        return products.stream().map(productDTOMapper).toList();
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(listing(products.stream().map(productDTOMapper).toList()));
+    }
+
+    private static ProductPageDTO listing(List<ProductDTO> items) {
+        return ProductPageDTO.builder()
+                .items(items)
+                .nextCursor(items.get(items.size() - 1).getId())
+                .hasNext(true)
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.tn.maktba.dto.user;
+
+import com.tn.maktba.model.user.UserEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserEntityDTOMapperBenchmark {
+
+    private static final int USERS = 100;
+
+    private final UserEntityDTOMapper userEntityDTOMapper = new UserEntityDTOMapper();
+    private List<UserEntity> users;
+
+    @Setup
+    public void setUp() {
+        users = new ArrayList<>(USERS);
+        for (long id = 1; id <= USERS; id++) {
+            users.add(UserEntity.builder()
+                    .id(id)
+                    .firstName("Amine")
+                    .lastName("Ben Salah")
+                    .phoneNumber("+2162000" + String.format("%04d", id))
+                    .idCartNumber(String.format("%08d", id))
+                    .email("user" + id + "@maktba.tn")
+                    .address("Avenue Habib Bourguiba, Tunis")
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public UserEntityDTO mapUser() {
+        return userEntityDTOMapper.apply(users.get(0));
+    }
+
+    @Benchmark
+    public List<UserEntityDTO> mapUsers() {
+        return users.stream().map(userEntityDTOMapper).toList();
+    }
+}
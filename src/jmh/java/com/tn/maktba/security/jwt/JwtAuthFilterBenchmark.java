@@ -0,0 +1,79 @@
+package com.tn.maktba.security.jwt;
+
+import com.tn.maktba.BenchmarkContext;
+import com.tn.maktba.model.token.Token;
+import com.tn.maktba.model.token.TokenType;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.TokenRepository;
+import com.tn.maktba.repository.UserRepository;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an authenticated request through {@link JwtAuthFilter} in both validation modes. The default
+ * mode loads the user and the stored token from the database on every request; the stateless mode
+ * only verifies the token and checks the in-memory revocation list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtAuthFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean stateless;
+
+    private ConfigurableApplicationContext context;
+    private JwtAuthFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (req, res) -> {
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--security.jwt.stateless=" + stateless);
+        UserEntity user = context.getBean(UserRepository.class).save(UserEntity.builder()
+                .firstName("Bench")
+                .lastName("User")
+                .phoneNumber("+21620000000")
+                .idCartNumber("12345678")
+                .password("secret")
+                .build());
+        String token = context.getBean(JwtService.class).generateJwtToken(user);
+        context.getBean(TokenRepository.class).save(Token.builder()
+                .user(user)
+                .token(token)
+                .tokenType(TokenType.ACCESS)
+                .expired(false)
+                .revoked(false)
+                .build());
+
+        filter = context.getBean(JwtAuthFilter.class);
+        request = new MockHttpServletRequest("GET", "/api/cart");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        try {
+            filter.doFilter(request, response, chain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tn.maktba.security.jwt;
+
+import com.tn.maktba.model.user.UserEntity;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private JwtService uncachedJwtService;
+    private UserEntity user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(10_000);
+        uncachedJwtService = new JwtService(0);
+        user = UserEntity.builder()
+                .id(1L)
+                .idCartNumber("12345678")
+                .phoneNumber("+21620000000")
+                .build();
+        token = jwtService.generateJwtToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateJwtToken(user);
+    }
+
+    @Benchmark
+    public Claims parseCachedToken() {
+        return jwtService.parseAccessToken(token);
+    }
+
+    @Benchmark
+    public Claims parseUncachedToken() {
+        return uncachedJwtService.parseAccessToken(token);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtService.isTokenValid(token, user);
+    }
+}
@@ -0,0 +1,35 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.product.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CartTotalBenchmark {
+
+    @Param({"5", "50"})
+    public int itemCount;
+
+    private List<CartItem> items;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(itemCount);
+        for (long id = 1; id <= itemCount; id++) {
+            Product product = Product.builder().id(id).name("Product " + id).price(BigDecimal.valueOf(250 + 100 * id, 2)).build();
+            items.add(CartItem.builder().id(id).product(product).quantity((int) (id % 4) + 1).build());
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        return CartServiceImpl.calculateTotal(items);
+    }
+}
@@ -31,8 +31,11 @@ public class CartController {
     }
 
     @PostMapping("/confirm/{userId}")
-    public ResponseEntity<?> confirmCart(@PathVariable Long userId) {
-        return cartService.confirmCart(userId);
+    public ResponseEntity<?> confirmCart(@PathVariable Long userId,
+                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return idempotencyKey == null
+                ? cartService.confirmCart(userId)
+                : cartService.confirmCart(userId, idempotencyKey);
     }
 
     @GetMapping("/get/{userId}")
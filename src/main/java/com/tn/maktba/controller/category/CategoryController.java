@@ -1,18 +1,22 @@
 package com.tn.maktba.controller.category;
 
 import com.tn.maktba.dto.category.CategoryRequestDTO;
+import com.tn.maktba.service.catalog.CatalogVersion;
 import com.tn.maktba.service.category.CategoryService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/api/categories")
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CatalogVersion catalogVersion;
 
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CatalogVersion catalogVersion) {
         this.categoryService = categoryService;
+        this.catalogVersion = catalogVersion;
     }
 
     @PostMapping("/create")
@@ -21,12 +25,18 @@ public class CategoryController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> getCategory(@PathVariable Long id) {
+    public ResponseEntity<?> getCategory(@PathVariable Long id, ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
         return categoryService.getCategory(id);
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllCategories() {
+    public ResponseEntity<?> getAllCategories(ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
         return categoryService.getAllCategories();
     }
 
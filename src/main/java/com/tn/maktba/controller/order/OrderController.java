@@ -1,18 +1,27 @@
 package com.tn.maktba.controller.order;
 
 import com.tn.maktba.dto.order.OrderRequests;
+import com.tn.maktba.service.order.OrderEventStream;
+import com.tn.maktba.service.order.OrderQueueStream;
 import com.tn.maktba.service.order.OrderService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/order")
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderEventStream orderEventStream;
+    private final OrderQueueStream orderQueueStream;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderEventStream orderEventStream,
+                           OrderQueueStream orderQueueStream) {
         this.orderService = orderService;
+        this.orderEventStream = orderEventStream;
+        this.orderQueueStream = orderQueueStream;
     }
 
     @PutMapping("/modify/{orderId}")
@@ -21,8 +30,20 @@ public class OrderController {
     }
 
     @GetMapping("/admin/orders")
-    public ResponseEntity<?> getAdminOrders() {
-        return orderService.getAdminOrders();
+    public ResponseEntity<?> getAdminOrders(@RequestParam(required = false) Integer page,
+                                            @RequestParam(required = false) Integer size,
+                                            @RequestParam(required = false) String direction) {
+        return orderService.getAdminOrders(page, size, direction);
+    }
+
+    @GetMapping(path = "/admin/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderEvents() {
+        return orderEventStream.subscribe();
+    }
+
+    @GetMapping(path = "/admin/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAdminOrders() {
+        return orderQueueStream.subscribe();
     }
 
     @PutMapping("/admin/prepare/{orderId}")
@@ -30,6 +51,11 @@ public class OrderController {
         return orderService.prepareOrder(orderId);
     }
 
+    @PutMapping("/admin/prepare")
+    public ResponseEntity<?> prepareOrders(@RequestBody OrderRequests.PrepareOrdersRequest request) {
+        return orderService.prepareOrders(request.orderIds());
+    }
+
     @DeleteMapping("/admin/remove/{orderId}")
     public ResponseEntity<?> removeOrder(@PathVariable Long orderId) {
         return orderService.removeOrder(orderId);
@@ -1,9 +1,12 @@
 package com.tn.maktba.controller.product;
 
+import com.tn.maktba.dto.product.ProductFilter;
 import com.tn.maktba.dto.product.ProductRequestDTO;
+import com.tn.maktba.service.catalog.CatalogVersion;
 import com.tn.maktba.service.product.ProductService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.io.IOException;
 
@@ -12,9 +15,11 @@ import java.io.IOException;
 public class ProductController {
 
     private final ProductService productService;
+    private final CatalogVersion catalogVersion;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, CatalogVersion catalogVersion) {
         this.productService = productService;
+        this.catalogVersion = catalogVersion;
     }
 
     @PostMapping("/create")
@@ -23,13 +28,42 @@ public class ProductController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProduct(@PathVariable Long id) {
+    public ResponseEntity<?> getProduct(@PathVariable Long id, ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
         return productService.getProduct(id);
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllProducts() {
-        return productService.getAllProducts();
+    public ResponseEntity<?> getAllProducts(@ModelAttribute ProductFilter filter,
+                                            @RequestParam(required = false) Long after,
+                                            @RequestParam(required = false) Integer size,
+                                            ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
+        return productService.getAllProducts(filter, after, size);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(@RequestParam String q,
+                                            @RequestParam(required = false) Integer limit,
+                                            ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
+        return productService.searchProducts(q, limit);
+    }
+
+    @GetMapping("/search/autocomplete")
+    public ResponseEntity<?> autocomplete(@RequestParam String prefix,
+                                          @RequestParam(required = false) Integer limit,
+                                          ServletWebRequest request) {
+        if (catalogVersion.checkNotModified(request)) {
+            return null;
+        }
+        return productService.autocomplete(prefix, limit);
     }
 
     @PutMapping("/{id}")
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -16,4 +17,5 @@ public class CartDTO {
     private Long cartId;
     private Long userId;
     private List<ItemDTO> items;
+    private BigDecimal totalPrice;
 }
\ No newline at end of file
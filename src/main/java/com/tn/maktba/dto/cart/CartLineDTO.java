@@ -0,0 +1,6 @@
+package com.tn.maktba.dto.cart;
+
+public record CartLineDTO(
+        Long productId,
+        Integer quantity
+) {}
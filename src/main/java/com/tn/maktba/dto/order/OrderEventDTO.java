@@ -0,0 +1,15 @@
+package com.tn.maktba.dto.order;
+
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.model.order.OrderStatus;
+
+import java.time.Instant;
+
+public record OrderEventDTO(
+        Long id,
+        Long orderId,
+        Long userId,
+        OrderEventType type,
+        OrderStatus status,
+        Instant occurredAt
+) {}
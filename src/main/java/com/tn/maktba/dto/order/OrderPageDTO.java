@@ -0,0 +1,19 @@
+package com.tn.maktba.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageDTO {
+    private List<CartOrderDTO> items;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
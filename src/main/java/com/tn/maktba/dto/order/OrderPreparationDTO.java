@@ -0,0 +1,27 @@
+package com.tn.maktba.dto.order;
+
+import com.tn.maktba.dto.product.StockShortageDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPreparationDTO {
+    private Long orderId;
+    private Outcome outcome;
+    private CartOrderDTO order;
+    private List<StockShortageDTO> shortages;
+
+    public enum Outcome {
+        PREPARED,
+        NOT_FOUND,
+        ALREADY_PROCESSED,
+        INSUFFICIENT_STOCK
+    }
+}
@@ -1,7 +1,9 @@
 package com.tn.maktba.dto.order;
 
+import java.util.List;
 import java.util.Map;
 
 public record OrderRequests() {
     public record ModifyOrderRequest(Long userId, Map<Long, Integer> updates) {}
+    public record PrepareOrdersRequest(List<Long> orderIds) {}
 }
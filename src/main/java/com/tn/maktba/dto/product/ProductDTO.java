@@ -1,9 +1,12 @@
 package com.tn.maktba.dto.product;
 
+import com.tn.maktba.model.product.ImageStatus;
 import lombok.Data;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,9 +15,11 @@ public class ProductDTO {
     private String name;
     private String description;
     private String level;
-    private Double price;
+    private BigDecimal price;
     private String publisher;
     private Integer quantity;
     private Long categoryId;
     private String imageURL;
+    private ImageStatus imageStatus;
+    private Long version;
 }
@@ -0,0 +1,27 @@
+package com.tn.maktba.dto.product;
+
+import com.tn.maktba.model.product.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+@Component
+public class ProductDTOMapper implements Function<Product, ProductDTO> {
+
+    @Override
+    public ProductDTO apply(Product product) {
+        return new ProductDTO(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getLevel(),
+                product.getPrice(),
+                product.getPublisher(),
+                product.getQuantity(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getImageURL(),
+                product.getImageStatus(),
+                product.getVersion()
+        );
+    }
+}
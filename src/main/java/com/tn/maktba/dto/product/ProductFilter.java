@@ -0,0 +1,11 @@
+package com.tn.maktba.dto.product;
+
+import java.math.BigDecimal;
+
+public record ProductFilter(
+        Long categoryId,
+        String level,
+        String publisher,
+        BigDecimal minPrice,
+        BigDecimal maxPrice
+) {}
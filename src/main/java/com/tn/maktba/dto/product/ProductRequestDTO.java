@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,9 +15,11 @@ public class ProductRequestDTO {
     private String name;
     private String description;
     private String level;
-    private Double price;
+    private BigDecimal price;
     private String publisher;
     private Integer quantity;
     private Long categoryId;
     private MultipartFile image;
+    // Version the client last read; when set, the update is refused if the product changed since.
+    private Long version;
 }
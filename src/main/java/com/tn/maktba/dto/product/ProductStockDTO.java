@@ -0,0 +1,7 @@
+package com.tn.maktba.dto.product;
+
+public record ProductStockDTO(
+        Long id,
+        String name,
+        Integer quantity
+) {}
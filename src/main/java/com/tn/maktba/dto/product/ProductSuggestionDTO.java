@@ -0,0 +1,6 @@
+package com.tn.maktba.dto.product;
+
+public record ProductSuggestionDTO(
+        Long id,
+        String name
+) {}
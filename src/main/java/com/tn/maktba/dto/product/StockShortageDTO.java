@@ -0,0 +1,8 @@
+package com.tn.maktba.dto.product;
+
+public record StockShortageDTO(
+        Long productId,
+        String productName,
+        Integer requested,
+        Integer available
+) {}
@@ -2,6 +2,7 @@ package com.tn.maktba.exceptions;
 
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -84,6 +85,37 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntityBuilder.build(apiError);
     }
 
+    @ExceptionHandler(InsufficientStockException.class)
+    protected ResponseEntity<Object> handleInsufficientStockException(InsufficientStockException ex) {
+        List<String> details = ex.getShortages().stream()
+                .map(shortage -> "Insufficient stock for product: " + shortage.productName()
+                        + " (id " + shortage.productId() + "), requested " + shortage.requested()
+                        + ", available " + shortage.available())
+                .collect(Collectors.toList());
+
+        ApiError apiError = ApiError.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.BAD_REQUEST.value())
+                .message("Insufficient stock.")
+                .errors(details)
+                .build();
+        return ResponseEntityBuilder.build(apiError);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    protected ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        List<String> details = new ArrayList<>();
+        details.add(ex.getMessage());
+
+        ApiError apiError = ApiError.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .message("The resource was modified concurrently.")
+                .errors(details)
+                .build();
+        return ResponseEntityBuilder.build(apiError);
+    }
+
     @ExceptionHandler(ExpiredVerificationCodeException.class)
     protected ResponseEntity<Object> handleExpiredVerificationCodeException(ExpiredVerificationCodeException ex) {
         List<String> details = new ArrayList<>();
@@ -0,0 +1,21 @@
+package com.tn.maktba.exceptions;
+
+import com.tn.maktba.dto.product.StockShortageDTO;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InsufficientStockException extends RuntimeException {
+    private final List<StockShortageDTO> shortages;
+
+    public InsufficientStockException(List<StockShortageDTO> shortages) {
+        super("Insufficient stock for " + shortages.size() + " product(s)");
+        this.shortages = shortages;
+    }
+
+    public List<StockShortageDTO> getShortages() {
+        return shortages;
+    }
+}
@@ -0,0 +1,50 @@
+package com.tn.maktba.model.cart;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * An {@code Idempotency-Key} used to confirm a cart. The row is inserted at the start of the
+ * checkout transaction and completed with the resulting order in the same transaction, so the
+ * unique (user, key) constraint lets only one checkout per key commit. {@code response} holds the
+ * order as it was returned, for replays.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "checkout_idempotency_key", uniqueConstraints = @UniqueConstraint(
+        name = "uk_checkout_idempotency_key_user_key", columnNames = {"user_id", "idempotency_key"}),
+        indexes = @Index(name = "idx_checkout_idempotency_key_expires_at", columnList = "expires_at"))
+public class CheckoutIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "checkout_idempotency_key_seq")
+    @SequenceGenerator(name = "checkout_idempotency_key_seq", sequenceName = "checkout_idempotency_key_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,51 @@
+package com.tn.maktba.model.order;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Outbox record for one order state change. Written in the same transaction as the change and
+ * published afterwards by {@link com.tn.maktba.service.order.OrderEventRelay}. The order is
+ * referenced by id only, so the event of a removed order outlives it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "order_event", indexes = {
+        @Index(name = "idx_order_event_published_at", columnList = "published_at, id")
+})
+public class OrderEvent {
+    // One id per nextval, taken inside the recording transaction: a pooled block would let one
+    // instance record a later change of an order under a lower id than another instance's earlier one.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_event_seq")
+    @SequenceGenerator(name = "order_event_seq", sequenceName = "order_event_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OrderEventType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private OrderStatus status;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    @Column(name = "published_at")
+    private Instant publishedAt;
+}
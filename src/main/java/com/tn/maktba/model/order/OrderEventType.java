@@ -0,0 +1,5 @@
+package com.tn.maktba.model.order;
+
+public enum OrderEventType {
+    CREATED, MODIFIED, PROCESSED, REMOVED
+}
@@ -0,0 +1,5 @@
+package com.tn.maktba.model.product;
+
+public enum ImageStatus {
+    PENDING, READY, FAILED
+}
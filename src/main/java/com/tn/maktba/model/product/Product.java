@@ -6,13 +6,23 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.math.BigDecimal;
 
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "product")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
+@Table(name = "product", indexes = {
+        @Index(name = "idx_product_category_id", columnList = "category_id, id"),
+        @Index(name = "idx_product_level_id", columnList = "level, id"),
+        @Index(name = "idx_product_publisher_id", columnList = "publisher, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,12 +31,24 @@ public class Product {
     private String name;
     private String description;
     private String level;
-    private Double price;
+    @Column(precision = 12, scale = 2)
+    private BigDecimal price;
     private String publisher;
     private Integer quantity;
     private String imageURL;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "image_status", length = 16)
+    private ImageStatus imageStatus;
+
+    // Identifies the latest requested upload; only that upload may replace imageURL.
+    @Column(name = "image_upload_id", length = 36)
+    private String imageUploadId;
+
     @ManyToOne
     @JoinColumn(name = "category_id")
     private Category category;
+
+    @Version
+    private Long version;
 }
\ No newline at end of file
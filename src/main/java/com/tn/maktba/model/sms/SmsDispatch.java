@@ -0,0 +1,54 @@
+package com.tn.maktba.model.sms;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Outbox record for one SMS. Written in the same transaction as the data the message is about and
+ * delivered afterwards by {@link com.tn.maktba.service.sms.SmsDispatchWorker}. While a message is
+ * SENDING, {@code nextAttemptAt} is the end of the worker's lease, after which another worker may
+ * claim it again.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sms_dispatch", indexes = {
+        @Index(name = "idx_sms_dispatch_status_next_attempt", columnList = "status, next_attempt_at")
+})
+public class SmsDispatch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "phone_number", nullable = false, length = 20)
+    private String phoneNumber;
+
+    @Column(nullable = false, length = 320)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private SmsDispatchStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+}
@@ -0,0 +1,5 @@
+package com.tn.maktba.model.sms;
+
+public enum SmsDispatchStatus {
+    PENDING, SENDING, SENT, DEAD
+}
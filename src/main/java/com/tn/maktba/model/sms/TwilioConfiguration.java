@@ -4,7 +4,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@ConfigurationProperties(prefix = "twillio")
+@ConfigurationProperties(prefix = "twilio")
 public class TwilioConfiguration {
 
     private String accountSid;
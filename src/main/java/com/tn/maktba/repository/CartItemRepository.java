@@ -0,0 +1,65 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.dto.cart.CartLineDTO;
+import com.tn.maktba.dto.order.ItemDTO;
+import com.tn.maktba.model.cart.CartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    /**
+     * Adds {@code quantity} of a product to a cart in one statement, inserting the line or
+     * increasing the existing one. An increase is only applied while the new total does not exceed
+     * the product's stock. Returns the line's new quantity, or null when the increase was refused.
+     * The id comes straight from cart_item_seq, so it is the top of a pooled block nothing else uses.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO cart_item (id, cart_id, product_id, quantity) " +
+            "VALUES (nextval('cart_item_seq'), :cartId, :productId, :quantity) " +
+            "ON CONFLICT (cart_id, product_id) DO UPDATE " +
+            "SET quantity = cart_item.quantity + EXCLUDED.quantity " +
+            "WHERE cart_item.quantity + EXCLUDED.quantity <= " +
+            "(SELECT p.quantity FROM product p WHERE p.id = EXCLUDED.product_id) " +
+            "RETURNING quantity", nativeQuery = true)
+    Integer addQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+                        @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem i " +
+            "WHERE i.cart.id = :cartId " +
+            "AND i.product.id = :productId")
+    int deleteByCartIdAndProductId(@Param("cartId") Long cartId, @Param("productId") Long productId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartItem i " +
+            "WHERE i.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
+
+    @Query("SELECT new com.tn.maktba.dto.cart.CartLineDTO(i.product.id, i.quantity) " +
+            "FROM CartItem i " +
+            "WHERE i.cart.id = :cartId")
+    List<CartLineDTO> findLinesByCartId(@Param("cartId") Long cartId);
+
+    /**
+     * The cart's lines with their product's name and price, selected as columns of the join so no
+     * Product entity is loaded.
+     */
+    @Query("SELECT new com.tn.maktba.dto.order.ItemDTO(i.id, c.id, c.user.id, p.id, p.name, i.quantity, p.price) " +
+            "FROM CartItem i " +
+            "JOIN i.cart c " +
+            "JOIN i.product p " +
+            "WHERE c.id = :cartId " +
+            "ORDER BY i.id")
+    List<ItemDTO> findItemsByCartId(@Param("cartId") Long cartId);
+}
@@ -0,0 +1,41 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.model.cart.CheckoutIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface CheckoutIdempotencyKeyRepository extends JpaRepository<CheckoutIdempotencyKey, Long> {
+
+    @Query("SELECT k.response " +
+            "FROM CheckoutIdempotencyKey k " +
+            "WHERE k.userId = :userId " +
+            "AND k.idempotencyKey = :idempotencyKey " +
+            "AND k.response IS NOT NULL " +
+            "AND k.expiresAt > :now")
+    Optional<String> findResponse(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey,
+                                  @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CheckoutIdempotencyKey k " +
+            "WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CheckoutIdempotencyKey k " +
+            "WHERE k.userId = :userId " +
+            "AND k.idempotencyKey = :idempotencyKey " +
+            "AND k.expiresAt <= :now")
+    int deleteExpired(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey,
+                      @Param("now") Instant now);
+}
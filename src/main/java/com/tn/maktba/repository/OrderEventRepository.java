@@ -0,0 +1,43 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.model.order.OrderEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface OrderEventRepository extends JpaRepository<OrderEvent, Long> {
+
+    // No SKIP LOCKED: a second relay waits for the first instead of publishing later events of the
+    // same order ahead of the ones still being published.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e " +
+            "FROM OrderEvent e " +
+            "WHERE e.publishedAt IS NULL " +
+            "ORDER BY e.id")
+    List<OrderEvent> findUnpublishedForUpdate(Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderEvent e " +
+            "SET e.publishedAt = :publishedAt " +
+            "WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedAt") Instant publishedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OrderEvent e " +
+            "WHERE e.publishedAt < :cutoff")
+    int deletePublishedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -2,15 +2,53 @@ package com.tn.maktba.repository;
 
 import com.tn.maktba.model.order.Order;
 import com.tn.maktba.model.order.OrderStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 @Transactional(readOnly = true)
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserIdAndStatus(Long userId, OrderStatus status);
-    List<Order> findByStatusIn(List<OrderStatus> statuses);
-}
\ No newline at end of file
+
+    @Query("SELECT o.id FROM Order o WHERE o.status IN :statuses")
+    Slice<Long> findIdsByStatusIn(@Param("statuses") Collection<OrderStatus> statuses, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Order o " +
+            "SET o.status = :status, o.updatedAt = :updatedAt, o.version = o.version + 1 " +
+            "WHERE o.id = :orderId " +
+            "AND o.status <> :status")
+    int transitionStatus(@Param("orderId") Long orderId, @Param("status") OrderStatus status,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Order o " +
+            "SET o.status = :status, o.updatedAt = :updatedAt, o.version = o.version + 1 " +
+            "WHERE o.id IN :orderIds " +
+            "AND o.status <> :status")
+    int transitionStatus(@Param("orderIds") Collection<Long> orderIds, @Param("status") OrderStatus status,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Query(value = "SELECT id FROM orders WHERE id IN (:orderIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockByIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("SELECT DISTINCT o FROM Order o " +
+            "JOIN FETCH o.user " +
+            "LEFT JOIN FETCH o.items i " +
+            "LEFT JOIN FETCH i.product p " +
+            "LEFT JOIN FETCH p.category " +
+            "WHERE o.id IN :orderIds")
+    List<Order> findWithItemsByIdIn(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -0,0 +1,15 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductFilter;
+
+import java.util.List;
+
+public interface ProductPageQuery {
+
+    /**
+     * Returns up to {@code limit} products with an id above {@code cursor}, in id order, matching
+     * every filter that is set.
+     */
+    List<ProductDTO> findPageAfter(long cursor, ProductFilter filter, int limit);
+}
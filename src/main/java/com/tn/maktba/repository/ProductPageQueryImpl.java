@@ -0,0 +1,64 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductFilter;
+import com.tn.maktba.model.product.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the listing query with only the predicates of the filters that are set. A catch-all
+ * {@code (:x IS NULL OR col = :x)} form would leave PostgreSQL's generic plan unable to use the
+ * (category_id, id), (level, id) and (publisher, id) indexes; with the predicates omitted, each
+ * filter combination gets its own statement and plan.
+ */
+class ProductPageQueryImpl implements ProductPageQuery {
+
+    private final EntityManager entityManager;
+
+    ProductPageQueryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<ProductDTO> findPageAfter(long cursor, ProductFilter filter, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDTO> query = cb.createQuery(ProductDTO.class);
+        Root<Product> p = query.from(Product.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.greaterThan(p.get("id"), cursor));
+        if (filter.categoryId() != null) {
+            predicates.add(cb.equal(p.get("category").get("id"), filter.categoryId()));
+        }
+        if (filter.level() != null) {
+            predicates.add(cb.equal(p.get("level"), filter.level()));
+        }
+        if (filter.publisher() != null) {
+            predicates.add(cb.equal(p.get("publisher"), filter.publisher()));
+        }
+        if (filter.minPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(p.<BigDecimal>get("price"), filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(p.<BigDecimal>get("price"), filter.maxPrice()));
+        }
+
+        query.select(cb.construct(ProductDTO.class,
+                        p.get("id"), p.get("name"), p.get("description"), p.get("level"), p.get("price"),
+                        p.get("publisher"), p.get("quantity"), p.get("category").get("id"), p.get("imageURL"),
+                        p.get("imageStatus"), p.get("version")))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.asc(p.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,12 +1,68 @@
 package com.tn.maktba.repository;
 
 
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductStockDTO;
+import com.tn.maktba.model.product.ImageStatus;
 import com.tn.maktba.model.product.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 @Transactional(readOnly = true)
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductPageQuery {
+
+    @Query("SELECT new com.tn.maktba.dto.product.ProductDTO(" +
+            "p.id, p.name, p.description, p.level, p.price, p.publisher, p.quantity, p.category.id, p.imageURL, p.imageStatus, p.version) " +
+            "FROM Product p " +
+            "WHERE p.id = :id")
+    Optional<ProductDTO> findDTOById(@Param("id") Long id);
+
+    @Query("SELECT new com.tn.maktba.dto.product.ProductDTO(" +
+            "p.id, p.name, p.description, p.level, p.price, p.publisher, p.quantity, p.category.id, p.imageURL, p.imageStatus, p.version) " +
+            "FROM Product p " +
+            "WHERE p.id IN :ids")
+    List<ProductDTO> findDTOsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.tn.maktba.dto.product.ProductStockDTO(p.id, p.name, p.quantity) " +
+            "FROM Product p " +
+            "WHERE p.id IN :ids")
+    List<ProductStockDTO> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.tn.maktba.dto.product.ProductDTO(" +
+            "p.id, p.name, p.description, p.level, p.price, p.publisher, p.quantity, p.category.id, p.imageURL, p.imageStatus, p.version) " +
+            "FROM Product p " +
+            "ORDER BY p.id")
+    List<ProductDTO> findAllDTOs();
+
+    boolean existsByImageURL(String imageURL);
+
+    /**
+     * Swaps in an uploaded image if {@code uploadId} is still the product's latest upload. Returns 0
+     * when the product was deleted or a newer upload superseded this one.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p " +
+            "SET p.imageURL = :imageURL, p.imageStatus = :status, p.imageUploadId = NULL, p.version = p.version + 1 " +
+            "WHERE p.id = :id " +
+            "AND p.imageUploadId = :uploadId")
+    int completeImageUpload(@Param("id") Long id, @Param("uploadId") String uploadId,
+                            @Param("imageURL") String imageURL, @Param("status") ImageStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p " +
+            "SET p.imageStatus = :status, p.imageUploadId = NULL, p.version = p.version + 1 " +
+            "WHERE p.id = :id " +
+            "AND p.imageUploadId = :uploadId")
+    int failImageUpload(@Param("id") Long id, @Param("uploadId") String uploadId, @Param("status") ImageStatus status);
 }
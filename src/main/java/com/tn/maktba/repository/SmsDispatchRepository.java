@@ -0,0 +1,43 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.model.sms.SmsDispatch;
+import com.tn.maktba.model.sms.SmsDispatchStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface SmsDispatchRepository extends JpaRepository<SmsDispatch, Long> {
+
+    // lock timeout -2 is SKIP LOCKED: concurrent workers claim disjoint batches instead of waiting
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT d " +
+            "FROM SmsDispatch d " +
+            "WHERE d.status IN :statuses " +
+            "AND d.nextAttemptAt <= :now " +
+            "ORDER BY d.nextAttemptAt")
+    List<SmsDispatch> findDueForUpdate(@Param("statuses") Collection<SmsDispatchStatus> statuses,
+                                       @Param("now") Instant now, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SmsDispatch d " +
+            "SET d.status = :status, d.nextAttemptAt = :leaseUntil " +
+            "WHERE d.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("status") SmsDispatchStatus status,
+              @Param("leaseUntil") Instant leaseUntil);
+}
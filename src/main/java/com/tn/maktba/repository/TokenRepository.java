@@ -23,4 +23,10 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     List<Token> findAllValidTokensByUser(@Param("userId") Long userId);
 
     Optional<Token> findByToken(String token);
+
+    @Query("SELECT t.token " +
+            "FROM Token t " +
+            "WHERE t.tokenType = 'ACCESS' " +
+            "AND t.revoked = true")
+    List<String> findAllRevokedTokens();
 }
\ No newline at end of file
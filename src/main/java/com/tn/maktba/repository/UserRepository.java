@@ -1,7 +1,10 @@
 package com.tn.maktba.repository;
 
 import com.tn.maktba.model.user.UserEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,6 +18,8 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
 
     boolean existsByIdCartNumber(String idCartNumber);
 
+    // Runs on every authenticated request; the cached result is dropped whenever user_entity changes.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<UserEntity> findByIdCartNumber(String idCartNumber);
 
     Optional<UserEntity> findByPhoneNumber(String phoneNumber);
@@ -6,11 +6,13 @@ import com.tn.maktba.exceptions.RevokedTokenException;
 import com.tn.maktba.model.token.TokenType;
 import com.tn.maktba.model.user.UserEntity;
 import com.tn.maktba.repository.TokenRepository;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -33,6 +35,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     private TokenRepository tokenRepository;
 
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Value("${security.jwt.stateless:false}")
+    private boolean stateless;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -43,6 +51,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
 
         String jwt = authHeader.substring(7);
+        if (stateless) {
+            authenticateFromClaims(jwt, request);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         String idCartNumber = jwtService.getIdCartNumberFromJwtToken(jwt);
         if (idCartNumber == null) {
             throw new InvalidTokenException("Invalid token: Unable to extract idCartNumber.");
@@ -77,4 +91,18 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticateFromClaims(String jwt, HttpServletRequest request) {
+        Claims claims = jwtService.parseAccessToken(jwt);
+        if (tokenRevocationList.isRevoked(claims)) {
+            throw new RevokedTokenException("Token has been revoked.");
+        }
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserEntity principal = jwtService.toPrincipal(claims);
+            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                    principal, null, principal.getAuthorities());
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
+        }
+    }
 }
\ No newline at end of file
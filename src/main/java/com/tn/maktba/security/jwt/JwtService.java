@@ -1,20 +1,27 @@
 package com.tn.maktba.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.tn.maktba.exceptions.InvalidTokenException;
 import com.tn.maktba.model.user.UserEntity;
 import com.tn.maktba.security.utility.SecurityConstants;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
@@ -22,37 +29,66 @@ public class JwtService {
 
 
     private final Key accessKey;
+    private final JwtParser accessParser;
+    // compact token -> verified claims, each entry expiring at the token's exp
+    private final Cache<String, Claims> verifiedClaims;
 
-    public JwtService() {
+    public JwtService(@Value("${security.jwt.claims-cache-size:10000}") long claimsCacheSize) {
         this.accessKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SecurityConstants.JWT_ACCES_SECRET_KEY));
+        this.accessParser = Jwts.parser()
+                .setSigningKey(accessKey)
+                .build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new ExpireAtTokenExpiry())
+                .build();
     }
 
     public String getIdCartNumberFromJwtToken(String token) {
-        try {
-            return extractClaim(token, Claims::getSubject);
-        } catch (JwtException e) {
-            throw new InvalidTokenException("Invalid token");
-        }
+        return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        try {
-            return extractClaim(token, claimsResolver, accessKey);
-        } catch (JwtException e) {
-            throw new InvalidTokenException("Invalid token");
-        }
+        return claimsResolver.apply(parseClaims(token));
     }
 
     public String generateJwtToken(UserEntity userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put("uid", userDetails.getId());
         claims.put("phoneNumber", userDetails.getPhoneNumber());
         claims.put("type", "access");
         return buildToken(claims, userDetails, SecurityConstants.JWT_ACCES_EXPIRATION, accessKey);
     }
 
+    /**
+     * Verifies the signature and expiry of an access token with a single parse and returns its claims.
+     */
+    public Claims parseAccessToken(String token) {
+        Claims claims = parseClaims(token);
+        if (!"access".equals(claims.get("type", String.class))) {
+            throw new InvalidTokenException("Token type is not access.");
+        }
+        if (claims.getSubject() == null) {
+            throw new InvalidTokenException("Invalid token: Unable to extract idCartNumber.");
+        }
+        return claims;
+    }
+
+    /**
+     * Builds the authenticated principal from token claims alone, without loading the user.
+     */
+    public UserEntity toPrincipal(Claims claims) {
+        return UserEntity.builder()
+                .id(claims.get("uid", Long.class))
+                .idCartNumber(claims.getSubject())
+                .phoneNumber(claims.get("phoneNumber", String.class))
+                .build();
+    }
+
     private String buildToken(Map<String, Object> claims, UserEntity userDetails, long expirationTime, Key key) {
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userDetails.getIdCartNumber())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
@@ -61,36 +97,58 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, UserEntity userDetails) {
-        try {
-            String idCartNumber = extractClaim(token, Claims::getSubject);
-            String type = extractClaim(token, claims -> claims.get("type", String.class));
-            if (!"access".equals(type)) {
-                throw new InvalidTokenException("Token type is not access.");
-            }
-            return idCartNumber != null && idCartNumber.equals(userDetails.getIdCartNumber()) && !isTokenExpired(token);
-        } catch (JwtException e) {
-            throw new InvalidTokenException("Invalid token");
+        Claims claims = parseClaims(token);
+        if (!"access".equals(claims.get("type", String.class))) {
+            throw new InvalidTokenException("Token type is not access.");
         }
+        String idCartNumber = claims.getSubject();
+        return idCartNumber != null && idCartNumber.equals(userDetails.getIdCartNumber()) && !isTokenExpired(claims);
+    }
+
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpired(String token) {
+    /**
+     * Returns the verified claims of a token, parsing and checking its signature only the first
+     * time it is seen. Later requests carrying the same token are served from the cache until
+     * the token expires; tokens that fail verification are never cached. Entries are keyed by
+     * the full compact token so a lookup can only ever match the exact token that was verified.
+     */
+    private Claims parseClaims(String token) {
+        Claims claims;
         try {
-            return extractClaim(token, Claims::getExpiration, accessKey).before(new Date());
-        } catch (JwtException e) {
+            claims = verifiedClaims.get(token, key -> accessParser.parseClaimsJws(key).getBody());
+        } catch (JwtException | IllegalArgumentException e) {
             throw new InvalidTokenException("Invalid token");
         }
+        Date expiration = claims.getExpiration();
+        if (expiration != null && expiration.getTime() <= System.currentTimeMillis()) {
+            throw new InvalidTokenException("Invalid token");
+        }
+        return claims;
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver, Key key) {
-        Claims claims = extractAllClaims(token, key);
-        return claimsResolver.apply(claims);
-    }
+    private static final class ExpireAtTokenExpiry implements Expiry<String, Claims> {
+        private static final long DEFAULT_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
 
-    private Claims extractAllClaims(String token, Key key) {
-        return Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return DEFAULT_TTL_NANOS;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
-}
\ No newline at end of file
+}
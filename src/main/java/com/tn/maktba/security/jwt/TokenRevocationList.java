@@ -0,0 +1,64 @@
+package com.tn.maktba.security.jwt;
+
+import com.tn.maktba.exceptions.InvalidTokenException;
+import com.tn.maktba.repository.TokenRepository;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory set of revoked access token ids ({@code jti}), each kept until the token would have
+ * expired anyway. Lets {@link JwtAuthFilter} reject logged-out tokens without a database lookup.
+ * The set is local to this instance; it is reloaded from the token table on startup.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRevocationList.class);
+    private static final int PURGE_EVERY = 256;
+
+    private final JwtService jwtService;
+    private final TokenRepository tokenRepository;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final AtomicInteger revocations = new AtomicInteger();
+
+    public TokenRevocationList(JwtService jwtService, TokenRepository tokenRepository) {
+        this.jwtService = jwtService;
+        this.tokenRepository = tokenRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        tokenRepository.findAllRevokedTokens().forEach(this::revoke);
+        LOGGER.info("Loaded {} revoked access tokens", revoked.size());
+    }
+
+    public void revoke(String token) {
+        Claims claims;
+        try {
+            claims = jwtService.parseAccessToken(token);
+        } catch (InvalidTokenException e) {
+            // Expired or malformed tokens are already rejected by signature/expiry checks.
+            return;
+        }
+        if (claims.getId() == null) {
+            return;
+        }
+        revoked.put(claims.getId(), claims.getExpiration().getTime());
+        if (revocations.incrementAndGet() % PURGE_EVERY == 0) {
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(expiresAt -> expiresAt < now);
+        }
+    }
+
+    public boolean isRevoked(Claims claims) {
+        return claims.getId() == null || revoked.containsKey(claims.getId());
+    }
+}
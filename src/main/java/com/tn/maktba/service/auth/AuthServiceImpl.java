@@ -11,6 +11,7 @@ import com.tn.maktba.model.user.UserEntity;
 import com.tn.maktba.repository.TokenRepository;
 import com.tn.maktba.repository.UserRepository;
 import com.tn.maktba.security.jwt.JwtService;
+import com.tn.maktba.security.jwt.TokenRevocationList;
 import com.tn.maktba.service.sms.VerificationCodeService;
 import com.tn.maktba.service.token.RefreshTokenService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -36,11 +37,13 @@ public class AuthServiceImpl implements AuthService {
     private final AuthenticationManager authenticationManager;
     private final VerificationCodeService verificationCodeService;
     private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationList tokenRevocationList;
 
     public AuthServiceImpl(UserRepository userRepository, TokenRepository tokenRepository,
                            JwtService jwtService, PasswordEncoder passwordEncoder,
                            UserEntityDTOMapper userEntityDTOMapper, AuthenticationManager authenticationManager,
-                           VerificationCodeService verificationCodeService, RefreshTokenService refreshTokenService) {
+                           VerificationCodeService verificationCodeService, RefreshTokenService refreshTokenService,
+                           TokenRevocationList tokenRevocationList) {
         this.userRepository = userRepository;
         this.tokenRepository = tokenRepository;
         this.jwtService = jwtService;
@@ -49,6 +52,7 @@ public class AuthServiceImpl implements AuthService {
         this.authenticationManager = authenticationManager;
         this.verificationCodeService = verificationCodeService;
         this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     @Override
@@ -209,6 +213,7 @@ public class AuthServiceImpl implements AuthService {
                 token.setRevoked(true);
             });
             tokenRepository.saveAll(validUserTokens);
+            validUserTokens.forEach(token -> tokenRevocationList.revoke(token.getToken()));
         }
         List<RefreshToken> validRefreshTokens = refreshTokenService.fetchAllRefreshTokenByUserId(user.getId());
         if (!validRefreshTokens.isEmpty()) {
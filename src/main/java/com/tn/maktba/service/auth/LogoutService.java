@@ -1,6 +1,7 @@
 package com.tn.maktba.service.auth;
 
 import com.tn.maktba.repository.TokenRepository;
+import com.tn.maktba.security.jwt.TokenRevocationList;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.Authentication;
@@ -11,9 +12,11 @@ import org.springframework.stereotype.Service;
 public class LogoutService implements LogoutHandler {
 
     private final TokenRepository tokenRepository;
+    private final TokenRevocationList tokenRevocationList;
 
-    public LogoutService(TokenRepository tokenRepository) {
+    public LogoutService(TokenRepository tokenRepository, TokenRevocationList tokenRevocationList) {
         this.tokenRepository = tokenRepository;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     @Override
@@ -27,5 +30,6 @@ public class LogoutService implements LogoutHandler {
             storedToken.setRevoked(true);
             tokenRepository.save(storedToken);
         }
+        tokenRevocationList.revoke(token);
     }
 }
\ No newline at end of file
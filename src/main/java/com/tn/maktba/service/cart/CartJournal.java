@@ -0,0 +1,170 @@
+package com.tn.maktba.service.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of cart line changes that have not reached the database yet. Records are
+ * absolute ({@code S user product quantity} sets a line, quantity 0 removes it; {@code C user}
+ * empties a cart), so replaying every segment in order over the carts as stored in the database
+ * reproduces the in-memory state, however much of it had already been flushed. Segments are named
+ * {@code cart-<sequence>.journal}; a flush seals the current one and deletes sealed segments once
+ * every cart changed before the seal has been written.
+ */
+final class CartJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CartJournal.class);
+    private static final String PREFIX = "cart-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final boolean fsync;
+    private FileChannel segment;
+    private long sequence;
+    private boolean empty;
+
+    CartJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replays the existing segments, oldest first, then opens a new segment for appends.
+     */
+    synchronized void open(Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> sequences = sealedSequences(Long.MAX_VALUE);
+        for (long existing : sequences) {
+            replay(path(existing), replay);
+        }
+        sequence = sequences.isEmpty() ? 1 : sequences.getLast() + 1;
+        segment = openSegment(sequence);
+        empty = true;
+        if (!sequences.isEmpty()) {
+            LOGGER.info("Replayed {} cart journal segments from {}", sequences.size(), directory);
+        }
+    }
+
+    void set(long userId, long productId, int quantity) {
+        append("S " + userId + ' ' + productId + ' ' + quantity + '\n');
+    }
+
+    void clear(long userId) {
+        append("C " + userId + '\n');
+    }
+
+    /**
+     * Seals the current segment if anything was written to it and returns the sequence of the
+     * segment now open: everything appended before this call is in a lower-numbered segment.
+     */
+    synchronized long seal() throws IOException {
+        if (!empty) {
+            segment.close();
+            segment = openSegment(++sequence);
+            empty = true;
+        }
+        return sequence;
+    }
+
+    /**
+     * Deletes the sealed segments numbered below {@code sequence}.
+     */
+    synchronized void deleteBefore(long sequence) throws IOException {
+        for (long sealed : sealedSequences(sequence)) {
+            Files.deleteIfExists(path(sealed));
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    private synchronized void append(String record) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+            empty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the cart journal", e);
+        }
+    }
+
+    private FileChannel openSegment(long sequence) throws IOException {
+        return FileChannel.open(path(sequence), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private List<Long> sealedSequences(long below) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            long value = Long.parseLong(name, PREFIX.length(), name.length() - SUFFIX.length(), 10);
+                            if (value < below) {
+                                sequences.add(value);
+                            }
+                        } catch (NumberFormatException e) {
+                            LOGGER.warn("Ignoring unexpected file {} in the cart journal", name);
+                        }
+                    });
+        }
+        sequences.sort(Comparator.naturalOrder());
+        return sequences;
+    }
+
+    private Path path(long sequence) {
+        return directory.resolve(PREFIX + sequence + SUFFIX);
+    }
+
+    // A crash can leave the last record of a segment half written. Only newline-terminated records
+    // are replayed, so a torn one is dropped; its change was never acknowledged.
+    private static void replay(Path file, Replay replay) throws IOException {
+        String content = Files.readString(file, StandardCharsets.US_ASCII);
+        int end = content.lastIndexOf('\n');
+        if (end < 0) {
+            return;
+        }
+        for (String line : content.substring(0, end).split("\n")) {
+            String[] fields = line.split(" ");
+            try {
+                if (fields.length == 4 && fields[0].equals("S")) {
+                    replay.set(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3]));
+                } else if (fields.length == 2 && fields[0].equals("C")) {
+                    replay.clear(Long.parseLong(fields[1]));
+                } else {
+                    LOGGER.warn("Skipping malformed cart journal record in {}: {}", file, line);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Skipping malformed cart journal record in {}: {}", file, line);
+            }
+        }
+    }
+
+    interface Replay {
+        void set(long userId, long productId, int quantity);
+
+        void clear(long userId);
+    }
+}
@@ -7,5 +7,6 @@ public interface CartService {
     ResponseEntity<?> removeFromCart(Long userId, Long productId);
     ResponseEntity<?> resetCart(Long userId);
     ResponseEntity<?> confirmCart(Long userId);
+    ResponseEntity<?> confirmCart(Long userId, String idempotencyKey);
     ResponseEntity<?> getCartByUser(Long userId);
 }
\ No newline at end of file
@@ -1,44 +1,96 @@
 package com.tn.maktba.service.cart;
 
 import com.tn.maktba.dto.cart.CartDTO;
+import com.tn.maktba.dto.cart.CartLineDTO;
 import com.tn.maktba.dto.order.CartOrderDTO;
 import com.tn.maktba.dto.order.ItemDTO;
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.StockShortageDTO;
+import com.tn.maktba.exceptions.InsufficientStockException;
 import com.tn.maktba.model.cart.Cart;
 import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.cart.CheckoutIdempotencyKey;
 import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
 import com.tn.maktba.model.order.OrderItem;
 import com.tn.maktba.model.order.OrderStatus;
 import com.tn.maktba.model.product.Product;
 import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartItemRepository;
 import com.tn.maktba.repository.CartRepository;
 import com.tn.maktba.repository.OrderRepository;
 import com.tn.maktba.repository.ProductRepository;
 import com.tn.maktba.repository.UserRepository;
+import com.tn.maktba.service.order.OrderEventService;
+import com.tn.maktba.service.stock.StockReservationService;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 public class CartServiceImpl implements CartService {
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private static final String DECREMENT_CART_LINE =
+            "UPDATE cart_item SET quantity = quantity - ? WHERE cart_id = ? AND product_id = ?";
+
+    private static final String DELETE_EMPTY_CART_LINES =
+            "DELETE FROM cart_item WHERE cart_id = ? AND quantity <= 0";
+
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final OrderEventService orderEventService;
+    private final CheckoutIdempotencyService checkoutIdempotencyService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate checkoutTransaction;
+    // only present with cart.store=memory; carts then live in memory instead of the cart tables
+    private final HotCartStore hotCartStore;
 
-    public CartServiceImpl(CartRepository cartRepository, OrderRepository orderRepository,
-                           UserRepository userRepository, ProductRepository productRepository) {
+    public CartServiceImpl(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                           OrderRepository orderRepository,
+                           UserRepository userRepository, ProductRepository productRepository,
+                           StockReservationService stockReservationService, OrderEventService orderEventService,
+                           CheckoutIdempotencyService checkoutIdempotencyService,
+                           JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           ObjectProvider<HotCartStore> hotCartStore) {
         this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.orderEventService = orderEventService;
+        this.checkoutIdempotencyService = checkoutIdempotencyService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkoutTransaction = new TransactionTemplate(transactionManager);
+        this.hotCartStore = hotCartStore.getIfAvailable();
     }
 
+    /**
+     * Adds to the cart with a single upsert on the (cart, product) line; the user and product reads
+     * are normally served by the second-level cache and the cart is only created on first use.
+     * With the in-memory cart store the line is updated in memory and written back later.
+     */
     @Override
     public ResponseEntity<?> addToCart(Long userId, Long productId, Integer quantity) {
         if (quantity <= 0) {
@@ -61,76 +113,166 @@ public class CartServiceImpl implements CartService {
             return ResponseEntity.status(400).body(Map.of("error", "Requested quantity exceeds available stock: " + product.getName()));
         }
 
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = Cart.builder().user(user).items(new ArrayList<>()).build();
-                    return cartRepository.save(newCart);
-                });
-
-        if (cart.getItems() == null) {
-            cart.setItems(new ArrayList<>());
-        }
-
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
-
-        CartItem cartItem;
-        if (existingItem.isPresent()) {
-            cartItem = existingItem.get();
-            int newQuantity = cartItem.getQuantity() + quantity;
-            if (product.getQuantity() < newQuantity) {
-                return ResponseEntity.status(400).body(Map.of("error", "Requested quantity exceeds available stock: " + product.getName()));
-            }
-            cartItem.setQuantity(newQuantity);
+        Integer newQuantity;
+        if (hotCartStore != null) {
+            newQuantity = hotCartStore.add(userId, productId, quantity, product.getQuantity());
         } else {
-            cartItem = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(quantity)
-                    .build();
-            cart.getItems().add(cartItem);
+            Long cartId = cartRepository.findIdByUserId(userId)
+                    .orElseGet(() -> cartRepository.save(Cart.builder().user(user).items(new ArrayList<>()).build()).getId());
+            newQuantity = cartItemRepository.addQuantity(cartId, productId, quantity);
         }
-
-        cartRepository.save(cart);
-        return ResponseEntity.ok(toCartItemDTO(cartItem));
+        if (newQuantity == null) {
+            return ResponseEntity.status(400).body(Map.of("error", "Requested quantity exceeds available stock: " + product.getName()));
+        }
+        return ResponseEntity.ok(ItemDTO.builder()
+                .productId(productId)
+                .productName(product.getName())
+                .quantity(newQuantity)
+                .price(product.getPrice())
+                .build());
     }
 
     @Override
     public ResponseEntity<?> removeFromCart(Long userId, Long productId) {
-        Cart cart = cartRepository.findByUserId(userId)
+        if (hotCartStore != null) {
+            return hotCartStore.remove(userId, productId)
+                    ? ResponseEntity.ok().build()
+                    : ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
+        }
+
+        Long cartId = cartRepository.findIdByUserId(userId)
                 .orElse(null);
-        if (cart == null) {
+        if (cartId == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
         }
 
-        if (cart.getItems() == null) {
-            cart.setItems(new ArrayList<>());
-        }
-        cart.getItems().removeIf(item -> item.getProduct().getId().equals(productId));
-        cartRepository.save(cart);
+        cartItemRepository.deleteByCartIdAndProductId(cartId, productId);
         return ResponseEntity.ok().build();
     }
 
     @Override
     public ResponseEntity<?> resetCart(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId)
+        if (hotCartStore != null) {
+            return hotCartStore.clear(userId)
+                    ? ResponseEntity.ok().build()
+                    : ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
+        }
+
+        Long cartId = cartRepository.findIdByUserId(userId)
                 .orElse(null);
-        if (cart == null) {
+        if (cartId == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
         }
 
-        if (cart.getItems() == null) {
-            cart.setItems(new ArrayList<>());
-        }
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        cartItemRepository.deleteByCartId(cartId);
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Places the order from the cart and takes the ordered quantities out of its lines, so quantity
+     * added from another device during checkout stays in the cart. The cart's version is
+     * incremented on commit: of two concurrent checkouts of the same cart only one commits, and
+     * the other gets a 409 with the cart as it is now instead of placing a second order.
+     */
     @Override
     public ResponseEntity<?> confirmCart(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId)
+        try {
+            return checkoutTransaction.execute(status -> checkout(userId));
+        } catch (OptimisticLockingFailureException e) {
+            return cartConflict(userId);
+        }
+    }
+
+    /**
+     * Confirms the cart at most once per {@code idempotencyKey}: a retry gets the order created by
+     * the first request instead of a new one. The key is claimed at the start of the checkout
+     * transaction; a concurrent retry blocks on it and replays the order once the first commits. A
+     * checkout that fails releases its key, so it can be retried with the same key.
+     */
+    @Override
+    public ResponseEntity<?> confirmCart(Long userId, String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid Idempotency-Key"));
+        }
+
+        Optional<CartOrderDTO> replay = checkoutIdempotencyService.findCompleted(userId, idempotencyKey);
+        if (replay.isPresent()) {
+            return ResponseEntity.ok(replay.get());
+        }
+
+        try {
+            ResponseEntity<?> checkedOut = checkoutTransaction.execute(status -> {
+                CheckoutIdempotencyKey claimed;
+                try {
+                    claimed = checkoutIdempotencyService.claim(userId, idempotencyKey);
+                } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                    // Another request with this key got there first.
+                    status.setRollbackOnly();
+                    return null;
+                }
+                ResponseEntity<?> response = checkout(userId);
+                if (response.getBody() instanceof CartOrderDTO order) {
+                    checkoutIdempotencyService.complete(claimed, order);
+                } else {
+                    status.setRollbackOnly();
+                }
+                return response;
+            });
+            if (checkedOut != null) {
+                return checkedOut;
+            }
+        } catch (OptimisticLockingFailureException e) {
+            // Another checkout of the same cart, under a different key, got there first.
+            return cartConflict(userId);
+        }
+        return checkoutIdempotencyService.findCompleted(userId, idempotencyKey)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(409)
+                        .body(Map.of("error", "A checkout with this Idempotency-Key is still in progress")));
+    }
+
+    /**
+     * Reads the lines as a projection of the cart item and product columns, so no Product entity is
+     * loaded, and sums the total from those same lines, so it always matches them. With the in-memory
+     * cart store the prices come from a product projection.
+     */
+    @Override
+    public ResponseEntity<?> getCartByUser(Long userId) {
+        if (hotCartStore != null) {
+            HotCartStore.CartSnapshot snapshot = hotCartStore.find(userId).orElse(null);
+            List<ItemDTO> items = snapshot != null ? toItemDTOs(snapshot, userId) : new ArrayList<>();
+            return ResponseEntity.ok(CartDTO.builder()
+                    .cartId(snapshot != null ? snapshot.cartId() : null)
+                    .userId(userId)
+                    .items(items)
+                    .totalPrice(totalOf(items))
+                    .build());
+        }
+
+        Long cartId = cartRepository.findIdByUserId(userId)
+                .orElse(null);
+        if (cartId == null) {
+            return ResponseEntity.ok(CartDTO.builder()
+                    .userId(userId)
+                    .items(new ArrayList<>())
+                    .totalPrice(BigDecimal.ZERO)
+                    .build());
+        }
+        List<ItemDTO> items = cartItemRepository.findItemsByCartId(cartId);
+        return ResponseEntity.ok(CartDTO.builder()
+                .cartId(cartId)
+                .userId(userId)
+                .items(items)
+                .totalPrice(totalOf(items))
+                .build());
+    }
+
+    private ResponseEntity<?> checkout(Long userId) {
+        if (hotCartStore != null) {
+            return confirmHotCart(userId);
+        }
+
+        Cart cart = cartRepository.findForCheckoutByUserId(userId)
                 .orElse(null);
         if (cart == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
@@ -140,48 +282,130 @@ public class CartServiceImpl implements CartService {
             return ResponseEntity.status(400).body(Map.of("error", "Cart is empty"));
         }
 
-        for (CartItem item : cart.getItems()) {
-            Product product = item.getProduct();
-            if (product.getQuantity() < item.getQuantity()) {
-                return ResponseEntity.status(400).body(Map.of("error", "Insufficient stock for product: " + product.getName()));
-            }
+        Map<Long, Integer> quantitiesByProduct = quantitiesByProduct(cart.getItems());
+        Order order = placeOrder(cart.getUser(), cart.getItems(), quantitiesByProduct);
+        takeOrderedQuantities(cart.getId(), quantitiesByProduct);
+        return ResponseEntity.ok(toCartOrderDTO(order));
+    }
+
+    // One batch decrementing the ordered lines, in product id order so concurrent checkouts lock rows
+    // in the same order, and one statement dropping the lines left empty.
+    private void takeOrderedQuantities(Long cartId, Map<Long, Integer> quantitiesByProduct) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantitiesByProduct).entrySet());
+        jdbcTemplate.batchUpdate(DECREMENT_CART_LINE, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, cartId);
+            ps.setLong(3, line.getKey());
+        });
+        jdbcTemplate.update(DELETE_EMPTY_CART_LINES, cartId);
+    }
+
+    private ResponseEntity<?> cartConflict(Long userId) {
+        return ResponseEntity.status(409).body(Map.of(
+                "error", "Cart was checked out concurrently",
+                "current", getCartByUser(userId).getBody()));
+    }
+
+    /**
+     * Places the order from the in-memory cart. Its quantities are taken out of the cart once the
+     * order is committed, which also writes the cart back to the database. A concurrent checkout of
+     * the same cart fails with an optimistic locking failure, as with the cart row's version.
+     */
+    private ResponseEntity<?> confirmHotCart(Long userId) {
+        HotCartStore.CartSnapshot snapshot = hotCartStore.find(userId)
+                .orElse(null);
+        if (snapshot == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Cart not found"));
+        }
+
+        List<CartItem> items = toCartItems(snapshot.lines());
+        if (items.isEmpty()) {
+            return ResponseEntity.status(400).body(Map.of("error", "Cart is empty"));
+        }
+
+        Map<Long, Integer> quantitiesByProduct = quantitiesByProduct(items);
+        Order order = placeOrder(userRepository.getReferenceById(userId), items, quantitiesByProduct);
+        hotCartStore.ordered(userId, snapshot, quantitiesByProduct);
+        return ResponseEntity.ok(toCartOrderDTO(order));
+    }
+
+    private Order placeOrder(UserEntity user, List<CartItem> items, Map<Long, Integer> quantitiesByProduct) {
+        List<StockShortageDTO> shortages = stockReservationService.findShortages(quantitiesByProduct);
+        if (!shortages.isEmpty()) {
+            throw new InsufficientStockException(shortages);
         }
 
         Order order = Order.builder()
-                .user(cart.getUser())
-                .items(cart.getItems().stream().map(item -> {
+                .user(user)
+                .items(items.stream().map(item -> {
                     OrderItem orderItem = OrderItem.builder()
                             .product(item.getProduct())
                             .quantity(item.getQuantity())
                             .build();
                     return orderItem;
                 }).toList())
-                .totalPrice(calculateTotal(cart.getItems()))
+                .totalPrice(calculateTotal(items))
                 .createdAt(LocalDateTime.now())
                 .status(OrderStatus.PENDING)
                 .build();
 
         order.getItems().forEach(item -> item.setOrder(order));
         orderRepository.save(order);
-        cart.getItems().clear();
-        cartRepository.save(cart);
-        return ResponseEntity.ok(toCartOrderDTO(order));
+        orderEventService.record(order, OrderEventType.CREATED);
+        return order;
     }
 
-    @Override
-    public ResponseEntity<?> getCartByUser(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseGet(() -> Cart.builder().user(UserEntity.builder().id(userId).build()).items(new ArrayList<>()).build());
-        return ResponseEntity.ok(toCartDTO(cart));
+    private static Map<Long, Integer> quantitiesByProduct(List<CartItem> items) {
+        Map<Long, Integer> quantitiesByProduct = new HashMap<>();
+        for (CartItem item : items) {
+            quantitiesByProduct.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantitiesByProduct;
     }
 
-    private ItemDTO toCartItemDTO(CartItem cartItem) {
-        return ItemDTO.builder()
-                .productId(cartItem.getProduct().getId())
-                .productName(cartItem.getProduct().getName())
-                .quantity(cartItem.getQuantity())
-                .price(cartItem.getProduct().getPrice())
-                .build();
+    // Unsaved cart items for in-memory cart lines; lines of deleted products are left out.
+    private List<CartItem> toCartItems(List<CartLineDTO> lines) {
+        if (lines.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(lines.stream().map(CartLineDTO::productId).toList())) {
+            products.put(product.getId(), product);
+        }
+        List<CartItem> items = new ArrayList<>(lines.size());
+        for (CartLineDTO line : lines) {
+            Product product = products.get(line.productId());
+            if (product != null) {
+                items.add(CartItem.builder().product(product).quantity(line.quantity()).build());
+            }
+        }
+        return items;
+    }
+
+    // Item views of in-memory cart lines, priced from a product projection; lines of deleted products are left out.
+    private List<ItemDTO> toItemDTOs(HotCartStore.CartSnapshot snapshot, Long userId) {
+        if (snapshot.lines().isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductDTO> products = new HashMap<>();
+        for (ProductDTO product : productRepository.findDTOsByIdIn(snapshot.lines().stream().map(CartLineDTO::productId).toList())) {
+            products.put(product.getId(), product);
+        }
+        List<ItemDTO> items = new ArrayList<>(snapshot.lines().size());
+        for (CartLineDTO line : snapshot.lines()) {
+            ProductDTO product = products.get(line.productId());
+            if (product != null) {
+                items.add(ItemDTO.builder()
+                        .cartId(snapshot.cartId())
+                        .userId(userId)
+                        .productId(product.getId())
+                        .productName(product.getName())
+                        .quantity(line.quantity())
+                        .price(product.getPrice())
+                        .build());
+            }
+        }
+        return items;
     }
 
     private CartOrderDTO toCartOrderDTO(Order order) {
@@ -201,24 +425,20 @@ public class CartServiceImpl implements CartService {
                 .build();
     }
 
-    private CartDTO toCartDTO(Cart cart) {
-        return CartDTO.builder()
-                .cartId(cart.getId())
-                .userId(cart.getUser() != null ? cart.getUser().getId() : null)
-                .items(cart.getItems() != null ? cart.getItems().stream().map(this::toCartItemDTO).toList() : new ArrayList<>())
-                .build();
+    // Exact decimal total of lines whose products are already loaded for the order being placed.
+    static BigDecimal calculateTotal(List<CartItem> items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem item : items) {
+            total = total.add(item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        return total;
     }
 
-    private Double calculateTotal(List<? extends Object> items) {
-        return items.stream()
-                .mapToDouble(item -> {
-                    if (item instanceof CartItem cartItem) {
-                        return cartItem.getProduct().getPrice() * cartItem.getQuantity();
-                    } else if (item instanceof OrderItem orderItem) {
-                        return orderItem.getProduct().getPrice() * orderItem.getQuantity();
-                    }
-                    return 0.0;
-                })
-                .sum();
+    private static BigDecimal totalOf(List<ItemDTO> items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (ItemDTO item : items) {
+            total = total.add(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        return total;
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.dto.order.CartOrderDTO;
+import com.tn.maktba.model.cart.CheckoutIdempotencyKey;
+
+import java.util.Optional;
+
+public interface CheckoutIdempotencyService {
+    Optional<CartOrderDTO> findCompleted(Long userId, String idempotencyKey);
+    CheckoutIdempotencyKey claim(Long userId, String idempotencyKey);
+    void complete(CheckoutIdempotencyKey claimed, CartOrderDTO order);
+}
@@ -0,0 +1,128 @@
+package com.tn.maktba.service.cart;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tn.maktba.dto.order.CartOrderDTO;
+import com.tn.maktba.model.cart.CheckoutIdempotencyKey;
+import com.tn.maktba.repository.CheckoutIdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Remembers the order created for each checkout {@code Idempotency-Key} for
+ * {@code checkout.idempotency.ttl}. Completed keys are cached in memory, so a replay on the same
+ * instance does not touch the database; other instances find them in the
+ * {@code checkout_idempotency_key} table, whose unique (user, key) constraint is what actually
+ * stops two checkouts with the same key from both committing.
+ */
+@Service
+public class CheckoutIdempotencyServiceImpl implements CheckoutIdempotencyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckoutIdempotencyServiceImpl.class);
+
+    private final CheckoutIdempotencyKeyRepository checkoutIdempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    // "<userId>:<key>" -> order returned for it
+    private final Cache<String, CartOrderDTO> completed;
+
+    public CheckoutIdempotencyServiceImpl(CheckoutIdempotencyKeyRepository checkoutIdempotencyKeyRepository,
+                                          ObjectMapper objectMapper,
+                                          @Value("${checkout.idempotency.ttl:24h}") Duration ttl,
+                                          @Value("${checkout.idempotency.cache-size:10000}") long cacheSize) {
+        this.checkoutIdempotencyKeyRepository = checkoutIdempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public Optional<CartOrderDTO> findCompleted(Long userId, String idempotencyKey) {
+        String cacheKey = cacheKey(userId, idempotencyKey);
+        CartOrderDTO order = completed.getIfPresent(cacheKey);
+        if (order != null) {
+            return Optional.of(order);
+        }
+        Optional<CartOrderDTO> stored = checkoutIdempotencyKeyRepository.findResponse(userId, idempotencyKey, Instant.now())
+                .map(this::fromJson);
+        stored.ifPresent(found -> completed.put(cacheKey, found));
+        return stored;
+    }
+
+    /**
+     * Inserts the key right away, so a concurrent checkout with the same key blocks on (or fails
+     * with) the unique constraint instead of creating a second order. An expired row for the key
+     * that has not been purged yet is deleted first, so the key can be reused once its TTL is over.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CheckoutIdempotencyKey claim(Long userId, String idempotencyKey) {
+        Instant now = Instant.now();
+        checkoutIdempotencyKeyRepository.deleteExpired(userId, idempotencyKey, now);
+        return checkoutIdempotencyKeyRepository.saveAndFlush(CheckoutIdempotencyKey.builder()
+                .userId(userId)
+                .idempotencyKey(idempotencyKey)
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void complete(CheckoutIdempotencyKey claimed, CartOrderDTO order) {
+        claimed.setOrderId(order.getOrderId());
+        claimed.setResponse(toJson(order));
+        String cacheKey = cacheKey(claimed.getUserId(), claimed.getIdempotencyKey());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                completed.put(cacheKey, order);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${checkout.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = checkoutIdempotencyKeyRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} expired checkout idempotency keys", deleted);
+        }
+    }
+
+    private static String cacheKey(Long userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+
+    private String toJson(CartOrderDTO order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CartOrderDTO fromJson(String response) {
+        try {
+            return objectMapper.readValue(response, CartOrderDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
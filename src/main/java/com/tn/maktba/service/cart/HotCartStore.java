@@ -0,0 +1,509 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.dto.cart.CartLineDTO;
+import com.tn.maktba.model.cart.Cart;
+import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.repository.CartItemRepository;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Keeps active carts in memory when {@code cart.store=memory}. Carts are spread over lock-striped
+ * shards of primitive-keyed maps and hold their lines in parallel {@code long}/{@code int} arrays,
+ * so add/remove/reset never touch the database. Every change is appended to a local
+ * {@link CartJournal} before it is applied; dirty carts are written back to the {@code cart} and
+ * {@code cart_item} tables every {@code cart.store.flush-interval-ms} and right after an order is
+ * placed, and the journal is replayed at startup to recover changes that were not written back
+ * before a crash. Carts that stay unused for {@code cart.store.idle-timeout} are dropped from memory
+ * once written back, and loaded from the database again on their next use.
+ * <p>
+ * The in-memory copy is authoritative, so this mode only supports a single instance.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class HotCartStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotCartStore.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate writeTransaction;
+    private final CartJournal journal;
+    private final Shard[] shards;
+    private final long idleTimeoutNanos;
+    // Bumped by every committed checkout; a cart loaded later starts at the current value, so a
+    // snapshot taken before an eviction still conflicts with a checkout committed meanwhile.
+    private final AtomicLong checkoutVersions = new AtomicLong();
+
+    public HotCartStore(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                        UserRepository userRepository, ProductRepository productRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${cart.store.shards:64}") int shardCount,
+                        @Value("${cart.store.idle-timeout:30m}") Duration idleTimeout,
+                        @Value("${cart.store.journal.directory:cart-journal}") Path journalDirectory,
+                        @Value("${cart.store.journal.fsync:false}") boolean fsync) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        // Write-backs also run after an order commits, while its transaction is still bound to the thread.
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journal = new CartJournal(journalDirectory, fsync);
+        this.shards = new Shard[Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Replays the journal left by the previous run and writes the recovered carts back.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        journal.open(new CartJournal.Replay() {
+            @Override
+            public void set(long userId, long productId, int quantity) {
+                update(userId, cart -> {
+                    cart.set(productId, quantity);
+                    return null;
+                });
+            }
+
+            @Override
+            public void clear(long userId) {
+                update(userId, cart -> {
+                    cart.clear();
+                    return null;
+                });
+            }
+        });
+        flush();
+    }
+
+    /**
+     * Adds {@code quantity} of a product to the user's cart, creating the cart if needed, unless
+     * the line would then exceed {@code stock}. Returns the line's new quantity, or null when refused.
+     */
+    public Integer add(long userId, long productId, int quantity, int stock) {
+        return update(userId, cart -> {
+            int total = cart.quantity(productId) + quantity;
+            if (total > stock) {
+                return null;
+            }
+            journal.set(userId, productId, total);
+            cart.set(productId, total);
+            return total;
+        });
+    }
+
+    /**
+     * Removes a product from the user's cart. Returns false if the user has no cart.
+     */
+    public boolean remove(long userId, long productId) {
+        return update(userId, cart -> {
+            if (!cart.exists) {
+                return false;
+            }
+            if (cart.quantity(productId) > 0) {
+                journal.set(userId, productId, 0);
+                cart.set(productId, 0);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Empties the user's cart. Returns false if the user has no cart.
+     */
+    public boolean clear(long userId) {
+        return update(userId, cart -> {
+            if (!cart.exists) {
+                return false;
+            }
+            if (cart.size > 0) {
+                journal.clear(userId);
+                cart.clear();
+            }
+            return true;
+        });
+    }
+
+    public Optional<CartSnapshot> find(long userId) {
+        return update(userId, cart -> {
+            if (!cart.exists) {
+                return Optional.empty();
+            }
+            List<CartLineDTO> lines = new ArrayList<>(cart.size);
+            for (int i = 0; i < cart.size; i++) {
+                lines.add(new CartLineDTO(cart.productIds[i], cart.quantities[i]));
+            }
+            return Optional.of(new CartSnapshot(cart.cartId, lines, cart.checkoutVersion));
+        });
+    }
+
+    /**
+     * Takes the quantities of an order placed from {@code snapshot} out of the user's cart and writes
+     * the cart back. Like the database checkout, only one checkout of a cart can win: if another one
+     * is in flight, or committed after the snapshot was taken, this throws an
+     * {@link OptimisticLockingFailureException}. When called inside a transaction the quantities are
+     * taken out after it commits, so a rolled-back order leaves the cart as it was, and the cart stays
+     * claimed until then. Lines added while the order was being placed are kept.
+     */
+    public void ordered(long userId, CartSnapshot snapshot, Map<Long, Integer> quantitiesByProduct) {
+        update(userId, cart -> {
+            if (cart.checkingOut || cart.checkoutVersion != snapshot.checkoutVersion()) {
+                throw new OptimisticLockingFailureException("Cart of user " + userId + " was checked out concurrently");
+            }
+            cart.checkingOut = true;
+            return null;
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    endCheckout(userId, status == STATUS_COMMITTED ? quantitiesByProduct : null);
+                }
+            });
+        } else {
+            endCheckout(userId, quantitiesByProduct);
+        }
+    }
+
+    /**
+     * Writes every dirty cart back and drops idle ones. The journal segments sealed at the start are
+     * deleted only if every write succeeded, since until then they are the only durable copy.
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:5000}")
+    public void flush() {
+        long sealed;
+        try {
+            sealed = journal.seal();
+        } catch (IOException e) {
+            LOGGER.error("Could not seal the cart journal: {}", e.getMessage());
+            return;
+        }
+        long idleSince = System.nanoTime() - idleTimeoutNanos;
+        boolean complete = true;
+        for (Shard shard : shards) {
+            List<Long> dirty = new ArrayList<>();
+            shard.lock.lock();
+            try {
+                shard.carts.removeIf((userId, cart) ->
+                        !cart.isDirty() && !cart.checkingOut && cart.lastAccess - idleSince < 0);
+                shard.carts.forEach((userId, cart) -> {
+                    if (cart.isDirty()) {
+                        dirty.add(userId);
+                    }
+                });
+            } finally {
+                shard.lock.unlock();
+            }
+            for (long userId : dirty) {
+                try {
+                    write(userId);
+                } catch (DataIntegrityViolationException e) {
+                    // The user (or the cart row) is gone, so the cart can never be stored.
+                    LOGGER.warn("Discarding cart of user {} that can no longer be stored: {}", userId, e.getMessage());
+                    discard(userId);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not write back cart of user {}, will retry: {}", userId, e.getMessage());
+                    complete = false;
+                }
+            }
+        }
+        if (complete) {
+            try {
+                journal.deleteBefore(sealed);
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete flushed cart journal segments: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    // Releases the user's cart after a checkout, taking out the ordered quantities unless it rolled back (null).
+    private void endCheckout(long userId, Map<Long, Integer> quantitiesByProduct) {
+        update(userId, cart -> {
+            cart.checkingOut = false;
+            if (quantitiesByProduct != null) {
+                cart.checkoutVersion = checkoutVersions.incrementAndGet();
+                quantitiesByProduct.forEach((productId, quantity) -> {
+                    int current = cart.quantity(productId);
+                    if (current > 0) {
+                        int remaining = Math.max(0, current - quantity);
+                        journal.set(userId, productId, remaining);
+                        cart.set(productId, remaining);
+                    }
+                });
+            }
+            return null;
+        });
+        if (quantitiesByProduct == null) {
+            return;
+        }
+        try {
+            write(userId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not write back cart of user {} after checkout, will retry: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Runs {@code action} on the user's cart under its shard lock, loading the cart from the
+     * database first if it is not in memory. The load happens outside the lock.
+     */
+    private <T> T update(long userId, Function<HotCart, T> action) {
+        Shard shard = shard(userId);
+        while (true) {
+            shard.lock.lock();
+            try {
+                HotCart cart = shard.carts.get(userId);
+                if (cart != null) {
+                    cart.lastAccess = System.nanoTime();
+                    return action.apply(cart);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+            HotCart loaded = read(userId);
+            shard.lock.lock();
+            try {
+                if (shard.carts.get(userId) == null) {
+                    shard.carts.put(userId, loaded);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private HotCart read(long userId) {
+        HotCart cart = new HotCart();
+        cart.cartId = cartRepository.findIdByUserId(userId).orElse(null);
+        if (cart.cartId != null) {
+            cart.exists = true;
+            for (CartLineDTO line : cartItemRepository.findLinesByCartId(cart.cartId)) {
+                cart.set(line.productId(), line.quantity());
+            }
+        }
+        cart.flushedVersion = cart.version;
+        cart.checkoutVersion = checkoutVersions.get();
+        return cart;
+    }
+
+    /**
+     * Writes the user's cart back if it changed since its last write. Writes of one cart are
+     * serialized, and a write only marks the cart clean up to the version it stored.
+     */
+    private void write(long userId) {
+        Shard shard = shard(userId);
+        HotCart cart;
+        shard.lock.lock();
+        try {
+            cart = shard.carts.get(userId);
+        } finally {
+            shard.lock.unlock();
+        }
+        if (cart == null) {
+            return;
+        }
+        cart.writeLock.lock();
+        try {
+            long version;
+            Long cartId;
+            long[] productIds;
+            int[] quantities;
+            shard.lock.lock();
+            try {
+                if (!cart.isDirty()) {
+                    return;
+                }
+                version = cart.version;
+                cartId = cart.cartId;
+                productIds = Arrays.copyOf(cart.productIds, cart.size);
+                quantities = Arrays.copyOf(cart.quantities, cart.size);
+            } finally {
+                shard.lock.unlock();
+            }
+            Long storedId = writeTransaction.execute(status -> store(userId, cartId, productIds, quantities));
+            shard.lock.lock();
+            try {
+                cart.cartId = storedId;
+                cart.flushedVersion = version;
+            } finally {
+                shard.lock.unlock();
+            }
+        } finally {
+            cart.writeLock.unlock();
+        }
+    }
+
+    // Replaces the stored lines of the cart; lines of products deleted meanwhile are left out.
+    private Long store(long userId, Long cartId, long[] productIds, int[] quantities) {
+        if (cartId == null) {
+            cartId = cartRepository.save(Cart.builder()
+                    .user(userRepository.getReferenceById(userId))
+                    .items(new ArrayList<>())
+                    .build()).getId();
+        } else {
+            cartItemRepository.deleteByCartId(cartId);
+        }
+        if (productIds.length == 0) {
+            return cartId;
+        }
+        List<Long> ids = new ArrayList<>(productIds.length);
+        for (long productId : productIds) {
+            ids.add(productId);
+        }
+        Set<Long> existing = new HashSet<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            existing.add(product.getId());
+        }
+        Cart cart = cartRepository.getReferenceById(cartId);
+        List<CartItem> items = new ArrayList<>(productIds.length);
+        for (int i = 0; i < productIds.length; i++) {
+            if (existing.contains(productIds[i])) {
+                items.add(CartItem.builder()
+                        .cart(cart)
+                        .product(productRepository.getReferenceById(productIds[i]))
+                        .quantity(quantities[i])
+                        .build());
+            }
+        }
+        cartItemRepository.saveAll(items);
+        return cartId;
+    }
+
+    private void discard(long userId) {
+        Shard shard = shard(userId);
+        shard.lock.lock();
+        try {
+            shard.carts.remove(userId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private Shard shard(long userId) {
+        return shards[(int) ((userId * 0x9E3779B97F4A7C15L) >>> 32) & (shards.length - 1)];
+    }
+
+    /**
+     * A copy of a cart's lines; {@code checkoutVersion} identifies the last checkout it reflects.
+     */
+    public record CartSnapshot(Long cartId, List<CartLineDTO> lines, long checkoutVersion) {
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongObjectMap<HotCart> carts = new LongObjectMap<>(16);
+    }
+
+    /**
+     * A cart's lines as parallel arrays, unordered. Guarded by its shard's lock, except
+     * {@code writeLock}, which serializes database writes of the cart.
+     */
+    private static final class HotCart {
+        final ReentrantLock writeLock = new ReentrantLock();
+        Long cartId;
+        // false for a user without a cart; becomes true with the first line
+        boolean exists;
+        long[] productIds = new long[4];
+        int[] quantities = new int[4];
+        int size;
+        long version;
+        long flushedVersion;
+        long lastAccess = System.nanoTime();
+        long checkoutVersion;
+        // set while a checkout that read this cart is between placing its order and completing
+        boolean checkingOut;
+
+        boolean isDirty() {
+            return version != flushedVersion;
+        }
+
+        int quantity(long productId) {
+            int index = indexOf(productId);
+            return index < 0 ? 0 : quantities[index];
+        }
+
+        // A quantity of 0 removes the line.
+        void set(long productId, int quantity) {
+            int index = indexOf(productId);
+            if (quantity <= 0) {
+                if (index >= 0) {
+                    size--;
+                    productIds[index] = productIds[size];
+                    quantities[index] = quantities[size];
+                }
+            } else if (index >= 0) {
+                quantities[index] = quantity;
+            } else {
+                if (size == productIds.length) {
+                    productIds = Arrays.copyOf(productIds, size * 2);
+                    quantities = Arrays.copyOf(quantities, size * 2);
+                }
+                productIds[size] = productId;
+                quantities[size] = quantity;
+                size++;
+            }
+            exists = true;
+            version++;
+        }
+
+        void clear() {
+            size = 0;
+            exists = true;
+            version++;
+        }
+
+        private int indexOf(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (productIds[i] == productId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tn.maktba.service.catalog;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the product and category catalog, bumped after every committed write. Catalog reads
+ * use it as their ETag and Last-Modified, so a client that already has the current version gets a
+ * 304 without the request touching the database.
+ *
+ * <p>The version lives in memory and only sees writes made through this instance. It starts at the
+ * startup time so versions handed out before a restart are never reused.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    private volatile long lastModified = System.currentTimeMillis();
+
+    /**
+     * Must be called after the write is committed and any cached copy is invalidated; otherwise a
+     * concurrent read could tag pre-write data with the new version.
+     */
+    public synchronized void bump() {
+        version.incrementAndGet();
+        // HTTP dates have second precision, so two writes within a second must still differ.
+        lastModified = Math.max(System.currentTimeMillis(), lastModified + 1000);
+    }
+
+    /**
+     * Sets the ETag and Last-Modified of the current version on the response and returns true if
+     * the client's copy is current, in which case the response is already a 304.
+     */
+    public boolean checkNotModified(ServletWebRequest request) {
+        if (request.getResponse() != null) {
+            // Spring Security sends no-store by default, which would stop clients keeping a copy at all.
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+        // Read lastModified first: a bump in between then yields an older date, never a newer one.
+        long modified = lastModified;
+        return request.checkNotModified("\"" + version.get() + "\"", modified);
+    }
+}
@@ -0,0 +1,94 @@
+package com.tn.maktba.service.category;
+
+import com.tn.maktba.dto.category.CategoryDTO;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory copy of all categories. Reads see an immutable snapshot without locking; writes
+ * build a new snapshot and publish it with a single volatile store, so a reader never sees a
+ * half-applied change. Loaded when the application is ready (or by the first read, if earlier)
+ * and then updated by {@link CategoryServiceImpl} writes, so it only sees writes made through
+ * this instance.
+ */
+@Component
+public class CategoryRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CategoryRegistry.class);
+
+    private final CategoryRepository categoryRepository;
+    // category id -> name, ordered by id
+    private volatile SortedMap<Long, String> snapshot;
+
+    public CategoryRegistry(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        SortedMap<Long, String> names = new TreeMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            names.put(category.getId(), category.getName());
+        }
+        snapshot = Collections.unmodifiableSortedMap(names);
+        LOGGER.info("Category registry loaded with {} categories", names.size());
+    }
+
+    public List<CategoryDTO> getAll() {
+        SortedMap<Long, String> names = current();
+        List<CategoryDTO> categories = new ArrayList<>(names.size());
+        names.forEach((id, name) -> categories.add(new CategoryDTO(id, name)));
+        return categories;
+    }
+
+    public Optional<CategoryDTO> get(Long id) {
+        String name = id == null ? null : current().get(id);
+        return name == null ? Optional.empty() : Optional.of(new CategoryDTO(id, name));
+    }
+
+    public boolean contains(Long id) {
+        return id != null && current().containsKey(id);
+    }
+
+    /**
+     * Publishes a created or updated category. Call after the write is committed.
+     */
+    public synchronized void put(Category category) {
+        SortedMap<Long, String> names = new TreeMap<>(current());
+        names.put(category.getId(), category.getName());
+        snapshot = Collections.unmodifiableSortedMap(names);
+    }
+
+    /**
+     * Drops a deleted category. Call after the delete is committed.
+     */
+    public synchronized void remove(Long id) {
+        SortedMap<Long, String> current = current();
+        if (current.containsKey(id)) {
+            SortedMap<Long, String> names = new TreeMap<>(current);
+            names.remove(id);
+            snapshot = Collections.unmodifiableSortedMap(names);
+        }
+    }
+
+    private SortedMap<Long, String> current() {
+        SortedMap<Long, String> names = snapshot;
+        if (names == null) {
+            reload();
+            names = snapshot;
+        }
+        return names;
+    }
+}
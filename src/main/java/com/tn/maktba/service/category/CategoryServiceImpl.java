@@ -4,18 +4,21 @@ import com.tn.maktba.dto.category.CategoryDTO;
 import com.tn.maktba.dto.category.CategoryRequestDTO;
 import com.tn.maktba.model.category.Category;
 import com.tn.maktba.repository.CategoryRepository;
+import com.tn.maktba.service.catalog.CatalogVersion;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Service
 public class CategoryServiceImpl implements CategoryService {
     private final CategoryRepository categoryRepository;
+    private final CategoryRegistry categoryRegistry;
+    private final CatalogVersion catalogVersion;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, CategoryRegistry categoryRegistry,
+                               CatalogVersion catalogVersion) {
         this.categoryRepository = categoryRepository;
+        this.categoryRegistry = categoryRegistry;
+        this.catalogVersion = catalogVersion;
     }
 
     @Override
@@ -23,25 +26,23 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = new Category();
         category.setName(categoryRequestDTO.getName());
         category = categoryRepository.save(category);
+        categoryRegistry.put(category);
+        catalogVersion.bump();
         return ResponseEntity.ok(convertToDTO(category));
     }
 
     @Override
     public ResponseEntity<?> getCategory(Long id) {
-        Category category = categoryRepository.findById(id)
-                .orElse(null);
+        CategoryDTO category = categoryRegistry.get(id).orElse(null);
         if (category == null) {
             return ResponseEntity.status(404).body("Category not found");
         }
-        return ResponseEntity.ok(convertToDTO(category));
+        return ResponseEntity.ok(category);
     }
 
     @Override
     public ResponseEntity<?> getAllCategories() {
-        List<CategoryDTO> categories = categoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(categories);
+        return ResponseEntity.ok(categoryRegistry.getAll());
     }
 
     @Override
@@ -53,12 +54,16 @@ public class CategoryServiceImpl implements CategoryService {
         }
         category.setName(categoryRequestDTO.getName());
         category = categoryRepository.save(category);
+        categoryRegistry.put(category);
+        catalogVersion.bump();
         return ResponseEntity.ok(convertToDTO(category));
     }
 
     @Override
     public ResponseEntity<?> deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        categoryRegistry.remove(id);
+        catalogVersion.bump();
         return ResponseEntity.ok().build();
     }
 
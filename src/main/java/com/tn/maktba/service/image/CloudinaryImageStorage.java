@@ -0,0 +1,38 @@
+package com.tn.maktba.service.image;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+@Service
+@ConditionalOnProperty(name = "image.storage", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryImageStorage implements ImageStorage {
+
+    private final Cloudinary cloudinary;
+
+    public CloudinaryImageStorage(Cloudinary cloudinary) {
+        this.cloudinary = cloudinary;
+    }
+
+    @Override
+    public String store(Path file) throws IOException {
+        Map<?, ?> result = cloudinary.uploader().upload(file.toFile(), ObjectUtils.asMap("resource_type", "image"));
+        return result.get("secure_url").toString();
+    }
+
+    @Override
+    public void delete(String imageURL) throws IOException {
+        cloudinary.uploader().destroy(extractPublicId(imageURL), ObjectUtils.emptyMap());
+    }
+
+    private static String extractPublicId(String imageURL) {
+        String[] parts = imageURL.split("/");
+        String fileName = parts[parts.length - 1];
+        return fileName.split("\\.")[0];
+    }
+}
@@ -0,0 +1,22 @@
+package com.tn.maktba.service.image;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Stores product images and returns the URL clients load them from. Selected with the
+ * {@code image.storage} property.
+ */
+public interface ImageStorage {
+
+    /**
+     * Stores the image in {@code file} and returns its URL. The caller still owns {@code file}
+     * and deletes it afterwards.
+     */
+    String store(Path file) throws IOException;
+
+    /**
+     * Deletes the image behind {@code imageURL}. Callers make sure no product still uses it.
+     */
+    void delete(String imageURL) throws IOException;
+}
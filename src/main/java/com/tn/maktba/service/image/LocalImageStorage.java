@@ -0,0 +1,213 @@
+package com.tn.maktba.service.image;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores images on the local filesystem, named by the SHA-256 of their content, so uploading the
+ * same image twice keeps a single copy. Thumbnail and medium JPEG derivatives are generated on a
+ * background pool and are served next to the original as {@code <hash>-thumbnail.jpg} and
+ * {@code <hash>-medium.jpg}. Since a file name never changes content, the hash doubles as a
+ * strong ETag.
+ */
+@Service
+@ConditionalOnProperty(name = "image.storage", havingValue = "local")
+public class LocalImageStorage implements ImageStorage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalImageStorage.class);
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{64})(?:-(thumbnail|medium))?\\.(jpg|png|gif|bmp)");
+    private static final Map<String, String> EXTENSIONS = Map.of("jpeg", "jpg", "png", "png", "gif", "gif", "bmp", "bmp");
+    private static final Map<String, Integer> DERIVATIVE_SIZES = Map.of("thumbnail", 200, "medium", 800);
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Path originals;
+    private final Path derivatives;
+    private final Path staging;
+    private final String baseURL;
+    private final ThreadPoolExecutor derivativeWorkers;
+
+    public LocalImageStorage(@Value("${image.storage.local.root:images}") Path root,
+                             @Value("${image.storage.local.base-url:/api/images}") String baseURL,
+                             @Value("${image.storage.local.derivative-workers:1}") int workerCount) throws IOException {
+        this.originals = Files.createDirectories(root.resolve("originals"));
+        this.derivatives = Files.createDirectories(root.resolve("derivatives"));
+        this.staging = Files.createDirectories(root.resolve("staging"));
+        this.baseURL = baseURL;
+        this.derivativeWorkers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100),
+                Thread.ofPlatform().name("image-derivatives-", 0).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public String store(Path file) throws IOException {
+        String extension = detectExtension(file);
+        String hash = sha256(file);
+        String fileName = hash + "." + extension;
+        Path original = originals.resolve(fileName);
+        if (!Files.exists(original)) {
+            // Copy next to the final location first so readers never see a partially written file.
+            Path staged = Files.createTempFile(staging, hash, ".tmp");
+            try {
+                Files.copy(file, staged, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(staged, original, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(staged);
+            }
+        }
+        if (!Files.exists(derivatives.resolve(hash + "-thumbnail.jpg")) || !Files.exists(derivatives.resolve(hash + "-medium.jpg"))) {
+            derivativeWorkers.execute(() -> generateDerivatives(hash, original));
+        }
+        return baseURL + "/" + fileName;
+    }
+
+    @Override
+    public void delete(String imageURL) throws IOException {
+        Matcher matcher = FILE_NAME.matcher(imageURL.substring(imageURL.lastIndexOf('/') + 1));
+        if (!matcher.matches() || matcher.group(2) != null) {
+            throw new IOException("Not a locally stored image: " + imageURL);
+        }
+        Files.deleteIfExists(originals.resolve(matcher.group()));
+        for (String variant : DERIVATIVE_SIZES.keySet()) {
+            Files.deleteIfExists(derivatives.resolve(matcher.group(1) + "-" + variant + ".jpg"));
+        }
+    }
+
+    /**
+     * Returns the file served under {@code fileName}, or null if the name is not one this storage
+     * produces. The file itself may not exist, e.g. while its derivatives are still generated.
+     */
+    public Path resolve(String fileName) {
+        Matcher matcher = FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return matcher.group(2) == null ? originals.resolve(fileName) : derivatives.resolve(fileName);
+    }
+
+    /**
+     * Returns the strong ETag of a file name accepted by {@link #resolve}.
+     */
+    public static String etag(String fileName) {
+        return "\"" + fileName.substring(0, fileName.lastIndexOf('.')) + "\"";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        derivativeWorkers.shutdownNow();
+    }
+
+    private void generateDerivatives(String hash, Path original) {
+        try {
+            BufferedImage source = ImageIO.read(original.toFile());
+            if (source == null) {
+                throw new IOException("Unreadable image");
+            }
+            for (Map.Entry<String, Integer> derivative : DERIVATIVE_SIZES.entrySet()) {
+                Path target = derivatives.resolve(hash + "-" + derivative.getKey() + ".jpg");
+                if (!Files.exists(target)) {
+                    writeJpeg(scale(source, derivative.getValue()), target);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not generate derivatives of image {}: {}", hash, e.getMessage());
+        }
+    }
+
+    // Fits the image in a size x size box without upscaling, flattened on white since JPEG has no alpha.
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        Path staged = Files.createTempFile(staging, target.getFileName().toString(), ".tmp");
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(staged.toFile())) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    // Uses the decoder's own format detection rather than the client's file name or content type.
+    private static String detectExtension(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers != null && readers.hasNext()) {
+                String extension = EXTENSIONS.get(readers.next().getFormatName().toLowerCase(Locale.ROOT));
+                if (extension != null) {
+                    return extension;
+                }
+            }
+        }
+        throw new IOException("Unsupported image format");
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,65 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.dto.order.OrderEventDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Publishes committed order events to in-process listeners ({@code @EventListener} methods taking
+ * an {@link OrderEventDTO}), one at a time in id order, so the events of one order arrive in the
+ * order they were recorded. An event is marked published before it is delivered: listeners live in
+ * this process, so if it dies before delivering, they are gone as well. Published events are kept
+ * for {@code order.events.retention} and then deleted.
+ */
+@Component
+@ConditionalOnProperty(name = "order.events.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderEventRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderEventRelay.class);
+
+    private final OrderEventService orderEventService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final Duration retention;
+
+    public OrderEventRelay(OrderEventService orderEventService, ApplicationEventPublisher eventPublisher,
+                           @Value("${order.events.batch-size:100}") int batchSize,
+                           @Value("${order.events.retention:7d}") Duration retention) {
+        this.orderEventService = orderEventService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${order.events.poll-interval-ms:500}")
+    public void relay() {
+        List<OrderEventDTO> batch;
+        do {
+            batch = orderEventService.claimUnpublished(batchSize);
+            for (OrderEventDTO event : batch) {
+                try {
+                    eventPublisher.publishEvent(event);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Order event {} listener failed: {}", event.id(), e.getMessage());
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${order.events.purge-interval-ms:3600000}")
+    public void purge() {
+        int deleted = orderEventService.deletePublishedBefore(Instant.now().minus(retention));
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} published order events older than {}", deleted, retention);
+        }
+    }
+}
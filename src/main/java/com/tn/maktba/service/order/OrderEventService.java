@@ -0,0 +1,16 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.dto.order.OrderEventDTO;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderEventService {
+    void record(Order order, OrderEventType type);
+    void record(Collection<Order> orders, OrderEventType type);
+    List<OrderEventDTO> claimUnpublished(int limit);
+    int deletePublishedBefore(Instant cutoff);
+}
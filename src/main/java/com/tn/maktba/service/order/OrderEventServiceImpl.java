@@ -0,0 +1,76 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.dto.order.OrderEventDTO;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEvent;
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.repository.OrderEventRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Transactional side of the order event outbox. Events are recorded inside the transaction that
+ * changes the order, so an event exists if and only if its change was committed, and are then
+ * claimed in id order by {@link OrderEventRelay}.
+ */
+@Service
+public class OrderEventServiceImpl implements OrderEventService {
+
+    private final OrderEventRepository orderEventRepository;
+
+    public OrderEventServiceImpl(OrderEventRepository orderEventRepository) {
+        this.orderEventRepository = orderEventRepository;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Order order, OrderEventType type) {
+        orderEventRepository.save(toEvent(order, type, Instant.now()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<Order> orders, OrderEventType type) {
+        Instant now = Instant.now();
+        orderEventRepository.saveAll(orders.stream().map(order -> toEvent(order, type, now)).toList());
+    }
+
+    /**
+     * Marks up to {@code limit} unpublished events as published and returns them, oldest first.
+     * The caller publishes them once this transaction has committed.
+     */
+    @Override
+    @Transactional
+    public List<OrderEventDTO> claimUnpublished(int limit) {
+        List<OrderEvent> events = orderEventRepository.findUnpublishedForUpdate(Limit.of(limit));
+        if (!events.isEmpty()) {
+            orderEventRepository.markPublished(events.stream().map(OrderEvent::getId).toList(), Instant.now());
+        }
+        return events.stream()
+                .map(event -> new OrderEventDTO(event.getId(), event.getOrderId(), event.getUserId(),
+                        event.getType(), event.getStatus(), event.getOccurredAt()))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public int deletePublishedBefore(Instant cutoff) {
+        return orderEventRepository.deletePublishedBefore(cutoff);
+    }
+
+    private static OrderEvent toEvent(Order order, OrderEventType type, Instant occurredAt) {
+        return OrderEvent.builder()
+                .orderId(order.getId())
+                .userId(order.getUser().getId())
+                .type(type)
+                .status(order.getStatus())
+                .occurredAt(occurredAt)
+                .build();
+    }
+}
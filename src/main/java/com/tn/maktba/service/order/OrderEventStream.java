@@ -0,0 +1,69 @@
+package com.tn.maktba.service.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tn.maktba.dto.order.OrderEventDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * Server-Sent Events feed of order events for the admin dashboard. Each relayed
+ * {@link OrderEventDTO} is sent to every open connection as an event named after its type, with
+ * the event id as SSE id. A comment is sent every {@code order.events.sse.heartbeat-ms} so idle
+ * connections are not cut by proxies and dead ones are noticed. Connections end after
+ * {@code order.events.sse.timeout}; browsers reconnect on their own. A client that falls
+ * {@code order.events.sse.buffer-size} events behind is disconnected, see {@link SseConnections}.
+ */
+@Component
+public class OrderEventStream {
+
+    private final ObjectMapper objectMapper;
+    private final SseConnections connections;
+
+    public OrderEventStream(ObjectMapper objectMapper,
+                            @Value("${order.events.sse.timeout:30m}") Duration timeout,
+                            @Value("${order.events.sse.buffer-size:256}") int bufferSize,
+                            @Value("${order.events.sse.senders:8}") int senders) {
+        this.objectMapper = objectMapper;
+        this.connections = new SseConnections("order-events", timeout, bufferSize, senders);
+    }
+
+    public SseEmitter subscribe() {
+        SseConnections.Connection connection = connections.open();
+        connection.start(null);
+        return connection.emitter();
+    }
+
+    @EventListener
+    public void onOrderEvent(OrderEventDTO event) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        connections.broadcast(SseConnections.Event.of(String.valueOf(event.id()), event.type().name(), toJson(event)));
+    }
+
+    @Scheduled(fixedDelayString = "${order.events.sse.heartbeat-ms:20000}")
+    public void heartbeat() {
+        connections.broadcast(SseConnections.Event.comment("keep-alive"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.close();
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tn.maktba.service.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tn.maktba.dto.order.OrderEventDTO;
+import com.tn.maktba.model.order.OrderEventType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Live admin order queue over Server-Sent Events. A connection starts with a {@code snapshot}
+ * event holding the first {@code order.stream.snapshot-size} queued orders (an {@code OrderPageDTO},
+ * {@code hasNext} set if the queue is longer), followed by deltas built from relayed order events:
+ * {@code add} and {@code modify} carry the order as it is now, {@code remove} carries its id once
+ * it is prepared or removed. Deltas use the order event id as SSE id.
+ * <p>
+ * Deltas raised while the snapshot is loading are queued behind it; since they carry the current
+ * state of the order, replaying one the snapshot already includes is harmless. Each delta is
+ * loaded and serialized once for all connections, and only when someone is connected.
+ */
+@Component
+public class OrderQueueStream {
+
+    private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final SseConnections connections;
+    private final int snapshotSize;
+
+    public OrderQueueStream(OrderService orderService, ObjectMapper objectMapper,
+                            @Value("${order.stream.snapshot-size:500}") int snapshotSize,
+                            @Value("${order.stream.timeout:30m}") Duration timeout,
+                            @Value("${order.stream.buffer-size:256}") int bufferSize,
+                            @Value("${order.stream.senders:8}") int senders) {
+        this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.snapshotSize = snapshotSize;
+        this.connections = new SseConnections("order-stream", timeout, bufferSize, senders);
+    }
+
+    public SseEmitter subscribe() {
+        SseConnections.Connection connection = connections.open();
+        connection.start(SseConnections.Event.of(null, "snapshot", toJson(orderService.getAdminQueue(snapshotSize))));
+        return connection.emitter();
+    }
+
+    @EventListener
+    public void onOrderEvent(OrderEventDTO event) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        String id = String.valueOf(event.id());
+        switch (event.type()) {
+            // An order that left the queue since is skipped; its remove delta follows.
+            case CREATED, MODIFIED -> orderService.findQueuedOrder(event.orderId()).ifPresent(order ->
+                    connections.broadcast(SseConnections.Event.of(id,
+                            event.type() == OrderEventType.CREATED ? "add" : "modify",
+                            toJson(order))));
+            case PROCESSED, REMOVED -> connections.broadcast(SseConnections.Event.of(id, "remove",
+                    toJson(Map.of("orderId", event.orderId()))));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order.events.sse.heartbeat-ms:20000}")
+    public void heartbeat() {
+        connections.broadcast(SseConnections.Event.comment("keep-alive"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.close();
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.tn.maktba.service.order;
 
+import com.tn.maktba.dto.order.CartOrderDTO;
+import com.tn.maktba.dto.order.OrderPageDTO;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public interface OrderService {
     ResponseEntity<?> modifyOrder(Long userId, Long orderId, Map<Long, Integer> updates);
-    ResponseEntity<?> getAdminOrders();
+    ResponseEntity<?> getAdminOrders(Integer page, Integer size, String direction);
     ResponseEntity<?> prepareOrder(Long orderId);
+    ResponseEntity<?> prepareOrders(List<Long> orderIds);
     ResponseEntity<?> removeOrder(Long orderId);
+    OrderPageDTO getAdminQueue(int size);
+    Optional<CartOrderDTO> findQueuedOrder(Long orderId);
 }
@@ -2,34 +2,71 @@ package com.tn.maktba.service.order;
 
 import com.tn.maktba.dto.order.CartOrderDTO;
 import com.tn.maktba.dto.order.ItemDTO;
+import com.tn.maktba.dto.order.OrderPageDTO;
+import com.tn.maktba.dto.order.OrderPreparationDTO;
+import com.tn.maktba.dto.product.StockShortageDTO;
 import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
 import com.tn.maktba.model.order.OrderItem;
 import com.tn.maktba.model.order.OrderStatus;
 import com.tn.maktba.model.product.Product;
 import com.tn.maktba.repository.OrderRepository;
 import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.stock.StockReservationService;
+import com.tn.maktba.util.ConflictRetry;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int MAX_PREPARE_BATCH = 500;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final List<OrderStatus> ADMIN_QUEUE_STATUSES = List.of(OrderStatus.PENDING, OrderStatus.MODIFIED);
+
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final OrderEventService orderEventService;
+    private final ConflictRetry conflictRetry;
 
-    public OrderServiceImpl(OrderRepository orderRepository, ProductRepository productRepository) {
+    public OrderServiceImpl(OrderRepository orderRepository, ProductRepository productRepository,
+                            StockReservationService stockReservationService, OrderEventService orderEventService,
+                            ConflictRetry conflictRetry) {
         this.orderRepository = orderRepository;
 
         this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.orderEventService = orderEventService;
+        this.conflictRetry = conflictRetry;
     }
 
+    /**
+     * Modifies the order in a {@link ConflictRetry} transaction: if it is prepared or modified by
+     * someone else before this commits, the version check fails and the order is re-read, so a
+     * processed order is never switched back to modified. An order that keeps conflicting gets a
+     * 409 with its current state.
+     */
     @Override
     public ResponseEntity<?> modifyOrder(Long userId, Long orderId, Map<Long, Integer> updates) {
+        try {
+            return conflictRetry.execute(() -> applyModification(userId, orderId, updates));
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(orderId);
+        }
+    }
+
+    private ResponseEntity<?> applyModification(Long userId, Long orderId, Map<Long, Integer> updates) {
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Order not found"));
@@ -38,14 +75,21 @@ public class OrderServiceImpl implements OrderService {
             return ResponseEntity.status(400).body(Map.of("error", "Cannot modify order"));
         }
 
-        order.getItems().removeIf(item -> !updates.containsKey(item.getProduct().getId()));
-        for (Map.Entry<Long, Integer> entry : updates.entrySet()) {
-            Long productId = entry.getKey();
-            Integer quantity = entry.getValue();
+        // Resolve every product before touching the order, so a 404 leaves nothing to commit.
+        Map<Long, Product> products = new HashMap<>();
+        for (Long productId : updates.keySet()) {
             Product product = productRepository.findById(productId).orElse(null);
             if (product == null) {
                 return ResponseEntity.status(404).body(Map.of("error", "Product not found"));
             }
+            products.put(productId, product);
+        }
+
+        order.getItems().removeIf(item -> !updates.containsKey(item.getProduct().getId()));
+        for (Map.Entry<Long, Integer> entry : updates.entrySet()) {
+            Long productId = entry.getKey();
+            Integer quantity = entry.getValue();
+            Product product = products.get(productId);
 
             Optional<OrderItem> existingItem = order.getItems().stream()
                     .filter(item -> item.getProduct().getId().equals(productId))
@@ -67,46 +111,172 @@ public class OrderServiceImpl implements OrderService {
         order.setUpdatedAt(LocalDateTime.now());
         order.setStatus(OrderStatus.MODIFIED);
         orderRepository.save(order);
+        orderEventService.record(order, OrderEventType.MODIFIED);
         return ResponseEntity.ok(toDTO(order));
     }
 
+    /**
+     * Returns one page of the admin queue ordered by creation time. The page of ids is selected first
+     * so the database applies the limit, then those orders are loaded with their user, items and
+     * products in a single fetch-join query.
+     */
     @Override
-    public ResponseEntity<?> getAdminOrders() {
-        List<CartOrderDTO> orders = orderRepository.findByStatusIn(List.of(OrderStatus.PENDING, OrderStatus.MODIFIED))
-                .stream()
-                .map(this::toDTO)
-                .toList();
-        return ResponseEntity.ok(orders);
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getAdminOrders(Integer page, Integer size, String direction) {
+        Optional<Sort.Direction> sortDirection = direction == null
+                ? Optional.of(Sort.Direction.ASC)
+                : Sort.Direction.fromOptionalString(direction);
+        if (sortDirection.isEmpty()) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid sort direction"));
+        }
+        int pageNumber = page == null ? 0 : Math.max(page, 0);
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Sort sort = Sort.by(sortDirection.get(), "createdAt", "id");
+
+        return ResponseEntity.ok(adminQueuePage(pageNumber, pageSize, sort));
+    }
+
+    /**
+     * Returns the first {@code size} orders of the admin queue, oldest first, for the snapshot that
+     * opens the admin order stream.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public OrderPageDTO getAdminQueue(int size) {
+        return adminQueuePage(0, size, Sort.by(Sort.Direction.ASC, "createdAt", "id"));
+    }
+
+    /**
+     * Returns the order if it is currently in the admin queue.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CartOrderDTO> findQueuedOrder(Long orderId) {
+        return orderRepository.findWithItemsByIdIn(List.of(orderId)).stream()
+                .filter(order -> ADMIN_QUEUE_STATUSES.contains(order.getStatus()))
+                .findFirst()
+                .map(this::toDTO);
     }
 
     @Override
     public ResponseEntity<?> prepareOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId).orElse(null);
-        if (order == null) {
-            return ResponseEntity.status(404).body(Map.of("error", "Order not found"));
+        try {
+            return conflictRetry.execute(() -> applyPreparation(orderId));
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(orderId);
         }
-        if (order.getStatus() == OrderStatus.PROCESSED) {
+    }
+
+    private ResponseEntity<?> applyPreparation(Long orderId) {
+        // Claim the order first: the conditional update row-locks it, so two admins preparing the
+        // same order cannot both decrement stock.
+        if (orderRepository.transitionStatus(orderId, OrderStatus.PROCESSED, LocalDateTime.now()) == 0) {
+            if (!orderRepository.existsById(orderId)) {
+                return ResponseEntity.status(404).body(Map.of("error", "Order not found"));
+            }
             return ResponseEntity.status(400).body(Map.of("error", "Order already processed"));
         }
 
-        for (OrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            int newQuantity = product.getQuantity() - item.getQuantity();
-            if (newQuantity < 0) {
-                return ResponseEntity.status(400).body(Map.of("error", "Insufficient stock for product: " + product.getName()));
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        stockReservationService.reserve(quantitiesByProduct(order));
+        orderEventService.record(order, OrderEventType.PROCESSED);
+        return ResponseEntity.ok(toDTO(order));
+    }
+
+    /**
+     * Prepares a batch of orders in one transaction with a fixed number of statements: the orders are
+     * locked and loaded with their items, the stock of every product involved is locked and read once,
+     * and orders are then served greedily in the given order, so earlier orders win when stock runs
+     * short. Accepted orders are decremented in one JDBC batch and marked processed in one update.
+     */
+    @Override
+    @Transactional
+    public ResponseEntity<?> prepareOrders(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty() || orderIds.stream().anyMatch(Objects::isNull)) {
+            return ResponseEntity.status(400).body(Map.of("error", "No orders to prepare"));
+        }
+        Set<Long> requested = new LinkedHashSet<>(orderIds);
+        if (requested.size() > MAX_PREPARE_BATCH) {
+            return ResponseEntity.status(400)
+                    .body(Map.of("error", "Cannot prepare more than " + MAX_PREPARE_BATCH + " orders at once"));
+        }
+
+        // Orders are locked before products, the same order prepareOrder takes its locks in.
+        orderRepository.lockByIdIn(requested);
+        Map<Long, Order> orders = new HashMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (Order order : orderRepository.findWithItemsByIdIn(requested)) {
+            orders.put(order.getId(), order);
+            order.getItems().forEach(item -> products.put(item.getProduct().getId(), item.getProduct()));
+        }
+        Map<Long, Integer> available = new HashMap<>(stockReservationService.lockStock(products.keySet()));
+
+        List<OrderPreparationDTO> results = new ArrayList<>(requested.size());
+        List<Long> accepted = new ArrayList<>();
+        Map<Long, Integer> reserved = new HashMap<>();
+        for (Long orderId : requested) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                results.add(preparation(orderId, OrderPreparationDTO.Outcome.NOT_FOUND));
+                continue;
+            }
+            if (order.getStatus() == OrderStatus.PROCESSED) {
+                results.add(preparation(orderId, OrderPreparationDTO.Outcome.ALREADY_PROCESSED));
+                continue;
+            }
+
+            Map<Long, Integer> demand = quantitiesByProduct(order);
+            List<StockShortageDTO> shortages = new ArrayList<>();
+            demand.forEach((productId, quantity) -> {
+                int remaining = available.getOrDefault(productId, 0);
+                if (remaining < quantity) {
+                    shortages.add(new StockShortageDTO(productId, products.get(productId).getName(), quantity, remaining));
+                }
+            });
+            if (!shortages.isEmpty()) {
+                OrderPreparationDTO result = preparation(orderId, OrderPreparationDTO.Outcome.INSUFFICIENT_STOCK);
+                result.setShortages(shortages);
+                results.add(result);
+                continue;
             }
-            product.setQuantity(newQuantity);
-            productRepository.save(product);
+
+            demand.forEach((productId, quantity) -> {
+                available.merge(productId, -quantity, Integer::sum);
+                reserved.merge(productId, quantity, Integer::sum);
+            });
+            accepted.add(orderId);
+            results.add(preparation(orderId, OrderPreparationDTO.Outcome.PREPARED));
         }
 
-        order.setStatus(OrderStatus.PROCESSED);
-        order.setUpdatedAt(LocalDateTime.now());
-        orderRepository.save(order);
-        return ResponseEntity.ok(toDTO(order));
+        if (!accepted.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            stockReservationService.reserve(reserved);
+            orderRepository.transitionStatus(accepted, OrderStatus.PROCESSED, now);
+            List<Order> prepared = new ArrayList<>(accepted.size());
+            for (OrderPreparationDTO result : results) {
+                if (result.getOutcome() == OrderPreparationDTO.Outcome.PREPARED) {
+                    Order order = orders.get(result.getOrderId());
+                    order.setStatus(OrderStatus.PROCESSED);
+                    order.setUpdatedAt(now);
+                    result.setOrder(toDTO(order));
+                    prepared.add(order);
+                }
+            }
+            orderEventService.record(prepared, OrderEventType.PROCESSED);
+        }
+        return ResponseEntity.ok(results);
     }
 
     @Override
     public ResponseEntity<?> removeOrder(Long orderId) {
+        try {
+            return conflictRetry.execute(() -> applyRemoval(orderId));
+        } catch (OptimisticLockingFailureException e) {
+            return conflict(orderId);
+        }
+    }
+
+    private ResponseEntity<?> applyRemoval(Long orderId) {
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Order not found"));
@@ -116,9 +286,54 @@ public class OrderServiceImpl implements OrderService {
         }
 
         orderRepository.delete(order);
+        orderEventService.record(order, OrderEventType.REMOVED);
         return ResponseEntity.ok().build();
     }
 
+    private ResponseEntity<?> conflict(Long orderId) {
+        return orderRepository.findWithItemsByIdIn(List.of(orderId)).stream()
+                .findFirst()
+                .<ResponseEntity<?>>map(order -> ResponseEntity.status(409).body(Map.of(
+                        "error", "Order was modified concurrently",
+                        "current", toDTO(order))))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Order not found")));
+    }
+
+    private OrderPageDTO adminQueuePage(int pageNumber, int pageSize, Sort sort) {
+        Slice<Long> ids = orderRepository.findIdsByStatusIn(ADMIN_QUEUE_STATUSES, PageRequest.of(pageNumber, pageSize, sort));
+        Map<Long, Order> orders = new HashMap<>();
+        if (ids.hasContent()) {
+            orderRepository.findWithItemsByIdIn(ids.getContent()).forEach(order -> orders.put(order.getId(), order));
+        }
+        List<CartOrderDTO> items = ids.getContent().stream()
+                .map(orders::get)
+                .filter(Objects::nonNull)
+                .map(this::toDTO)
+                .toList();
+
+        return OrderPageDTO.builder()
+                .items(items)
+                .page(pageNumber)
+                .size(pageSize)
+                .hasNext(ids.hasNext())
+                .build();
+    }
+
+    private static Map<Long, Integer> quantitiesByProduct(Order order) {
+        Map<Long, Integer> quantitiesByProduct = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantitiesByProduct.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantitiesByProduct;
+    }
+
+    private static OrderPreparationDTO preparation(Long orderId, OrderPreparationDTO.Outcome outcome) {
+        return OrderPreparationDTO.builder()
+                .orderId(orderId)
+                .outcome(outcome)
+                .build();
+    }
+
     private CartOrderDTO toDTO(Order order) {
         return CartOrderDTO.builder()
                 .orderId(order.getId())
@@ -136,14 +351,11 @@ public class OrderServiceImpl implements OrderService {
                 .build();
     }
 
-    private Double calculateTotal(List<? extends Object> items) {
-        return items.stream()
-                .mapToDouble(item -> {
-                    if (item instanceof OrderItem orderItem) {
-                        return orderItem.getProduct().getPrice() * orderItem.getQuantity();
-                    }
-                    return 0.0;
-                })
-                .sum();
+    private static BigDecimal calculateTotal(List<OrderItem> items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : items) {
+            total = total.add(item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        return total;
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.tn.maktba.service.order;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The open connections of one Server-Sent Events stream. Broadcasting only queues an event on
+ * each connection and never touches an emitter, whose methods lock and may block on a slow client,
+ * so the caller never waits for one. Each connection's queue is bounded and drained by a task on a
+ * pool of {@code senderThreads} platform threads. A client that falls {@code bufferSize} events
+ * behind is marked closed instead of being buffered without limit, and its sender completes the
+ * emitter once the send in progress returns; browsers reconnect on their own.
+ */
+final class SseConnections {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SseConnections.class);
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final Supplier<SseEmitter> emitters;
+    private final int bufferSize;
+
+    SseConnections(String name, Duration timeout, int bufferSize, int senderThreads) {
+        this(name, () -> new SseEmitter(timeout.toMillis()), bufferSize, senderThreads);
+    }
+
+    SseConnections(String name, Supplier<SseEmitter> emitters, int bufferSize, int senderThreads) {
+        // A connection has at most one drain task queued or running, so the queue is bounded by the
+        // number of connections. Idle streams give their threads back.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), Thread.ofPlatform().name(name + "-", 0).factory());
+        pool.allowCoreThreadTimeOut(true);
+        this.senders = pool;
+        this.emitters = emitters;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Opens a connection. Broadcast events are queued right away but only sent once
+     * {@link Connection#start} is called, so a snapshot can be sent ahead of them.
+     */
+    Connection open() {
+        Connection connection = new Connection();
+        connections.add(connection);
+        return connection;
+    }
+
+    boolean isEmpty() {
+        return connections.isEmpty();
+    }
+
+    int size() {
+        return connections.size();
+    }
+
+    void broadcast(Event event) {
+        for (Connection connection : connections) {
+            connection.offer(event);
+        }
+    }
+
+    void close() {
+        connections.forEach(connection -> connection.emitter.complete());
+        connections.clear();
+        senders.shutdownNow();
+    }
+
+    /**
+     * An event to send; {@code id} and {@code name} may be null. {@code data} is JSON, serialized
+     * once for all connections.
+     */
+    record Event(String id, String name, String data, String comment) {
+        static Event of(String id, String name, String data) {
+            return new Event(id, name, data, null);
+        }
+
+        static Event comment(String comment) {
+            return new Event(null, null, null, comment);
+        }
+    }
+
+    final class Connection {
+        private final SseEmitter emitter = emitters.get();
+        private final BlockingDeque<Event> buffer = new LinkedBlockingDeque<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean started;
+        private volatile boolean closed;
+
+        private Connection() {
+            emitter.onCompletion(this::closed);
+            emitter.onTimeout(emitter::complete);
+            emitter.onError(error -> closed());
+        }
+
+        SseEmitter emitter() {
+            return emitter;
+        }
+
+        /**
+         * Starts sending, with {@code first} (if not null) ahead of anything queued so far.
+         */
+        void start(Event first) {
+            if (first != null && !buffer.offerFirst(first)) {
+                overflow();
+                return;
+            }
+            started = true;
+            schedule();
+        }
+
+        void offer(Event event) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offerLast(event)) {
+                overflow();
+                return;
+            }
+            schedule();
+        }
+
+        // A closed connection is scheduled too, so that its emitter is completed by a sender.
+        private void schedule() {
+            if ((started || closed) && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while (!closed && (event = buffer.pollFirst()) != null) {
+                    emitter.send(toBuilder(event));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away.
+                closed();
+                if (completed.compareAndSet(false, true)) {
+                    emitter.completeWithError(e);
+                }
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Closed or offered after the last check but before draining was reset: either this task
+            // sees it, or the closing or offering thread sees draining reset and schedules another.
+            if (closed) {
+                if (completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } else if (!buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        // Runs on the broadcasting thread, so it leaves the emitter to the sender.
+        private void overflow() {
+            LOGGER.debug("Closing SSE connection that fell {} events behind", bufferSize);
+            closed();
+            schedule();
+        }
+
+        private void closed() {
+            closed = true;
+            buffer.clear();
+            connections.remove(this);
+        }
+
+        private SseEmitter.SseEventBuilder toBuilder(Event event) {
+            SseEmitter.SseEventBuilder builder = SseEmitter.event();
+            if (event.comment() != null) {
+                return builder.comment(event.comment());
+            }
+            if (event.id() != null) {
+                builder.id(event.id());
+            }
+            if (event.name() != null) {
+                builder.name(event.name());
+            }
+            return builder.data(event.data(), MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.tn.maktba.service.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductFilter;
+import com.tn.maktba.dto.product.ProductPageDTO;
+import com.tn.maktba.service.catalog.CatalogVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for catalog reads. Single products are keyed by id and evicted precisely;
+ * listing pages are keyed by a generation number that every write bumps, so a page loaded
+ * concurrently with a write can never be served after that write has been acknowledged.
+ * Every invalidation also bumps the {@link CatalogVersion} clients revalidate against.
+ * Hit, miss and eviction counts are published as {@code cache.*} metrics.
+ */
+@Component
+public class ProductCache {
+
+    private final Cache<Long, ProductDTO> products;
+    private final Cache<PageKey, ProductPageDTO> pages;
+    private final AtomicLong generation = new AtomicLong();
+    private final CatalogVersion catalogVersion;
+
+    public ProductCache(@Value("${product.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${product.cache.page-maximum-size:500}") long pageMaximumSize,
+                        @Value("${product.cache.ttl:10m}") Duration ttl,
+                        MeterRegistry meterRegistry, CatalogVersion catalogVersion) {
+        this.catalogVersion = catalogVersion;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(pageMaximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "productPages");
+    }
+
+    public Optional<ProductDTO> getProduct(Long id, Function<Long, Optional<ProductDTO>> loader) {
+        return Optional.ofNullable(products.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    public ProductPageDTO getPage(ProductFilter filter, long cursor, int size, Supplier<ProductPageDTO> loader) {
+        return pages.get(new PageKey(generation.get(), filter, cursor, size), key -> loader.get());
+    }
+
+    public void evict(Long id) {
+        products.invalidate(id);
+        invalidatePages();
+    }
+
+    public void evictAll(Collection<Long> ids) {
+        products.invalidateAll(ids);
+        invalidatePages();
+    }
+
+    public void invalidatePages() {
+        generation.incrementAndGet();
+        pages.invalidateAll();
+        catalogVersion.bump();
+    }
+
+    private record PageKey(long generation, ProductFilter filter, long cursor, int size) {}
+}
@@ -0,0 +1,135 @@
+package com.tn.maktba.service.product;
+
+import com.tn.maktba.model.product.ImageStatus;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.image.ImageStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads product images to the configured {@link ImageStorage} off the request thread. The multipart upload is moved to a
+ * temporary file while the request is still open, then streamed from disk by a bounded worker
+ * pool. When the queue is full the request thread performs the upload itself, which slows callers
+ * down instead of dropping images. Replaced and deleted images are destroyed by the same workers,
+ * unless another product still uses them (content-addressed storage shares identical images).
+ */
+@Component
+public class ProductImageUploader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImageUploader.class);
+
+    private final ImageStorage imageStorage;
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ThreadPoolExecutor workers;
+
+    public ProductImageUploader(ImageStorage imageStorage, ProductRepository productRepository, ProductCache productCache,
+                                @Value("${product.image.upload.workers:2}") int workerCount,
+                                @Value("${product.image.upload.queue-capacity:100}") int queueCapacity) {
+        this.imageStorage = imageStorage;
+        this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("product-image-", 0).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Returns a new upload id to store on the product before calling {@link #upload}.
+     */
+    public String newUploadId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Spools {@code image} to a temporary file. Must be called while the request is still open,
+     * since the multipart data is discarded when it completes.
+     */
+    public Path spool(MultipartFile image) throws IOException {
+        Path file = Files.createTempFile("product-image-", ".upload");
+        try {
+            image.transferTo(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Uploads the spooled image and makes it the product's image if {@code uploadId} is still the
+     * latest upload for it, then destroys {@code previousImageURL}. An upload that was superseded,
+     * or whose product was deleted meanwhile, destroys its own image instead.
+     */
+    public void upload(Long productId, String uploadId, Path file, String previousImageURL) {
+        workers.execute(() -> {
+            try {
+                String imageURL = imageStorage.store(file);
+                if (productRepository.completeImageUpload(productId, uploadId, imageURL, ImageStatus.READY) == 0) {
+                    destroyNow(imageURL);
+                    return;
+                }
+                evict(productId);
+                if (previousImageURL != null) {
+                    destroyNow(previousImageURL);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Image upload for product {} failed: {}", productId, e.getMessage());
+                if (productRepository.failImageUpload(productId, uploadId, ImageStatus.FAILED) > 0) {
+                    evict(productId);
+                }
+            } finally {
+                deleteQuietly(file);
+            }
+        });
+    }
+
+    public void destroy(String imageURL) {
+        workers.execute(() -> destroyNow(imageURL));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOGGER.warn("{} image tasks were still queued at shutdown", workers.getQueue().size());
+            workers.shutdownNow();
+        }
+    }
+
+    private void evict(Long productId) {
+        productCache.evict(productId);
+        productCache.invalidatePages();
+    }
+
+    private void destroyNow(String imageURL) {
+        try {
+            if (!productRepository.existsByImageURL(imageURL)) {
+                imageStorage.delete(imageURL);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not delete image {}: {}", imageURL, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete temporary file {}", file);
+        }
+    }
+}
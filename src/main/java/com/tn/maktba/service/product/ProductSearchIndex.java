@@ -0,0 +1,238 @@
+package com.tn.maktba.service.product;
+
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductSuggestionDTO;
+import com.tn.maktba.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over product name, description, publisher and level.
+ * Built from the database once the application is ready and then kept up to date by
+ * {@link ProductServiceImpl} writes, so it only sees writes made through this instance.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductSearchIndex.class);
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float PUBLISHER_WEIGHT = 2.0f;
+    private static final float LEVEL_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_MATCH_WEIGHT = 0.5f;
+
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (product id -> field-weighted term frequency), sorted for prefix expansion
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // product id -> terms it was indexed under, to support removal
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+    // name term -> ids of products whose name contains it, ordered for prefix scans
+    private final NavigableMap<String, SortedSet<Long>> nameTerms = new TreeMap<>();
+    private final Map<Long, String> names = new HashMap<>();
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductDTO> products = productRepository.findAllDTOs();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentTerms.clear();
+            nameTerms.clear();
+            names.clear();
+            products.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Product search index built with {} products", products.size());
+    }
+
+    public void index(ProductDTO product) {
+        lock.writeLock().lock();
+        try {
+            delete(product.getId());
+            add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            delete(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks products by a BM25-style idf-weighted sum over the query terms. The last term also
+     * matches as a prefix, at a lower weight, so results follow the user while they type.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Float> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = documentTerms.size();
+            for (String term : terms) {
+                accumulate(scores, term, 1.0f, documentCount);
+            }
+            String last = terms.get(terms.size() - 1);
+            for (String term : postings.tailMap(last, false).keySet()) {
+                if (!term.startsWith(last)) {
+                    break;
+                }
+                accumulate(scores, term, PREFIX_MATCH_WEIGHT, documentCount);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return topScored(scores, limit);
+    }
+
+    /**
+     * Suggests products whose name contains a word starting with {@code prefix}. Walks the
+     * sorted name dictionary from the prefix and stops as soon as {@code limit} products are
+     * found, so the cost is bounded by the result size rather than the catalog size.
+     */
+    public List<ProductSuggestionDTO> autocomplete(String prefix, int limit) {
+        List<String> terms = tokenize(prefix);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        String start = terms.get(terms.size() - 1);
+        Set<Long> seen = new LinkedHashSet<>();
+        List<ProductSuggestionDTO> suggestions = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, SortedSet<Long>> entry : nameTerms.tailMap(start, true).entrySet()) {
+                if (!entry.getKey().startsWith(start)) {
+                    break;
+                }
+                for (Long id : entry.getValue()) {
+                    if (seen.add(id)) {
+                        suggestions.add(new ProductSuggestionDTO(id, names.get(id)));
+                        if (suggestions.size() == limit) {
+                            return suggestions;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return suggestions;
+    }
+
+    private static List<Long> topScored(Map<Long, Float> scores, int limit) {
+        Comparator<Map.Entry<Long, Float>> ranking = Map.Entry.<Long, Float>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Float>comparingByKey().reversed());
+        // Min-heap of the best `limit` entries: O(n log k) instead of sorting every match.
+        PriorityQueue<Map.Entry<Long, Float>> best = new PriorityQueue<>(limit + 1, ranking);
+        for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+            best.offer(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        Long[] ranked = new Long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll().getKey();
+        }
+        return List.of(ranked);
+    }
+
+    private void accumulate(Map<Long, Float> scores, String term, float weight, int documentCount) {
+        Map<Long, Float> documents = postings.get(term);
+        if (documents == null) {
+            return;
+        }
+        int documentFrequency = documents.size();
+        float idf = (float) Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        documents.forEach((id, frequency) ->
+                scores.merge(id, weight * idf * frequency / (frequency + 1.0f), Float::sum));
+    }
+
+    private void add(ProductDTO product) {
+        Long id = product.getId();
+        Map<String, Float> frequencies = new HashMap<>();
+        List<String> nameTokens = tokenize(product.getName());
+        nameTokens.forEach(term -> frequencies.merge(term, NAME_WEIGHT, Float::sum));
+        tokenize(product.getPublisher()).forEach(term -> frequencies.merge(term, PUBLISHER_WEIGHT, Float::sum));
+        tokenize(product.getLevel()).forEach(term -> frequencies.merge(term, LEVEL_WEIGHT, Float::sum));
+        tokenize(product.getDescription()).forEach(term -> frequencies.merge(term, DESCRIPTION_WEIGHT, Float::sum));
+
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, key -> new HashMap<>()).put(id, frequency));
+        documentTerms.put(id, frequencies.keySet());
+        if (product.getName() != null) {
+            names.put(id, product.getName());
+            nameTokens.forEach(term -> nameTerms.computeIfAbsent(term, key -> new TreeSet<>()).add(id));
+        }
+    }
+
+    private void delete(Long id) {
+        Set<String> terms = documentTerms.remove(id);
+        if (terms != null) {
+            for (String term : terms) {
+                Map<Long, Float> documents = postings.get(term);
+                if (documents != null) {
+                    documents.remove(id);
+                    if (documents.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+        String name = names.remove(id);
+        if (name != null) {
+            for (String term : tokenize(name)) {
+                SortedSet<Long> ids = nameTerms.get(term);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        nameTerms.remove(term);
+                    }
+                }
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
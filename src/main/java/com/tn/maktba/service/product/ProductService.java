@@ -1,5 +1,6 @@
 package com.tn.maktba.service.product;
 
+import com.tn.maktba.dto.product.ProductFilter;
 import com.tn.maktba.dto.product.ProductRequestDTO;
 import org.springframework.http.ResponseEntity;
 
@@ -8,7 +9,9 @@ import java.io.IOException;
 public interface ProductService {
     ResponseEntity<?> createProduct(ProductRequestDTO productRequestDTO) throws IOException;
     ResponseEntity<?> getProduct(Long id);
-    ResponseEntity<?> getAllProducts();
+    ResponseEntity<?> getAllProducts(ProductFilter filter, Long cursor, Integer size);
+    ResponseEntity<?> searchProducts(String query, Integer limit);
+    ResponseEntity<?> autocomplete(String prefix, Integer limit);
     ResponseEntity<?> updateProduct(Long id, ProductRequestDTO productRequestDTO) throws IOException;
     ResponseEntity<?> deleteProduct(Long id) throws IOException;
 }
\ No newline at end of file
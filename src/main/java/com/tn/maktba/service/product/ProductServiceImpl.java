@@ -1,107 +1,185 @@
 package com.tn.maktba.service.product;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductDTOMapper;
+import com.tn.maktba.dto.product.ProductFilter;
+import com.tn.maktba.dto.product.ProductPageDTO;
 import com.tn.maktba.dto.product.ProductRequestDTO;
-import com.tn.maktba.model.category.Category;
+import com.tn.maktba.model.product.ImageStatus;
 import com.tn.maktba.model.product.Product;
 import com.tn.maktba.repository.CategoryRepository;
 import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.category.CategoryRegistry;
+import com.tn.maktba.util.ConflictRetry;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 @Service
 public class ProductServiceImpl implements ProductService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 50;
+    private static final int DEFAULT_SUGGESTION_LIMIT = 8;
+    // product.price is numeric(12,2)
+    private static final int PRICE_SCALE = 2;
+    private static final int PRICE_INTEGER_DIGITS = 10;
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
-    private final Cloudinary cloudinary;
+    private final CategoryRegistry categoryRegistry;
+    private final ProductImageUploader productImageUploader;
+    private final ProductCache productCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductDTOMapper productDTOMapper;
+    private final ConflictRetry conflictRetry;
 
-    public ProductServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository, Cloudinary cloudinary) {
+    public ProductServiceImpl(ProductRepository productRepository, CategoryRepository categoryRepository,
+                              CategoryRegistry categoryRegistry,
+                              ProductImageUploader productImageUploader, ProductCache productCache, ProductSearchIndex productSearchIndex,
+                              ProductDTOMapper productDTOMapper, ConflictRetry conflictRetry) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
-        this.cloudinary = cloudinary;
+        this.categoryRegistry = categoryRegistry;
+        this.productImageUploader = productImageUploader;
+        this.productCache = productCache;
+        this.productSearchIndex = productSearchIndex;
+        this.productDTOMapper = productDTOMapper;
+        this.conflictRetry = conflictRetry;
     }
 
     @Override
     public ResponseEntity<?> createProduct(ProductRequestDTO productRequestDTO) throws IOException {
-        Category category = categoryRepository.findById(productRequestDTO.getCategoryId()).orElse(null);
-        if (category == null) {
+        if (!categoryRegistry.contains(productRequestDTO.getCategoryId())) {
             return ResponseEntity.status(404).body("Category not found");
         }
-
-        String imageURL = null;
-        if (productRequestDTO.getImage() != null && !productRequestDTO.getImage().isEmpty()) {
-            Map uploadResult = cloudinary.uploader().upload(productRequestDTO.getImage().getBytes(),
-                    ObjectUtils.asMap("resource_type", "image"));
-            imageURL = uploadResult.get("secure_url").toString();
+        if (!isStorablePrice(productRequestDTO.getPrice())) {
+            return ResponseEntity.status(400).body("Invalid price");
         }
 
+        Path image = spoolImage(productRequestDTO);
+
         Product product = new Product();
         product.setName(productRequestDTO.getName());
         product.setDescription(productRequestDTO.getDescription());
         product.setLevel(productRequestDTO.getLevel());
-        product.setPrice(productRequestDTO.getPrice());
+        product.setPrice(scaled(productRequestDTO.getPrice()));
         product.setPublisher(productRequestDTO.getPublisher());
         product.setQuantity(productRequestDTO.getQuantity());
-        product.setImageURL(imageURL);
-        product.setCategory(category);
+        product.setCategory(categoryRepository.getReferenceById(productRequestDTO.getCategoryId()));
+        String uploadId = markImagePending(product, image);
         product = productRepository.save(product);
-        return ResponseEntity.ok(convertToDTO(product));
+        if (image != null) {
+            productImageUploader.upload(product.getId(), uploadId, image, null);
+        }
+        ProductDTO productDTO = productDTOMapper.apply(product);
+        // Index before invalidating: invalidation bumps the catalog version that search responses
+        // are tagged with, so the index must already answer with the new data.
+        productSearchIndex.index(productDTO);
+        productCache.invalidatePages();
+        return ResponseEntity.ok(productDTO);
     }
 
     @Override
     public ResponseEntity<?> getProduct(Long id) {
-        Product product = productRepository.findById(id).orElse(null);
+        ProductDTO product = productCache.getProduct(id, productRepository::findDTOById).orElse(null);
         if (product == null) {
             return ResponseEntity.status(404).body("Product not found");
         }
-        return ResponseEntity.ok(convertToDTO(product));
+        return ResponseEntity.ok(product);
+    }
+
+    @Override
+    public ResponseEntity<?> getAllProducts(ProductFilter filter, Long cursor, Integer size) {
+        if (filter.minPrice() != null && filter.maxPrice() != null && filter.minPrice().compareTo(filter.maxPrice()) > 0) {
+            return ResponseEntity.status(400).body("Invalid price range");
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        long after = cursor == null ? 0L : cursor;
+        return ResponseEntity.ok(productCache.getPage(filter, after, pageSize, () -> loadPage(filter, after, pageSize)));
+    }
+
+    private ProductPageDTO loadPage(ProductFilter filter, long cursor, int pageSize) {
+        // Fetch one extra row to know whether another page exists without a count query.
+        List<ProductDTO> rows = productRepository.findPageAfter(cursor, filter, pageSize + 1);
+
+        boolean hasNext = rows.size() > pageSize;
+        List<ProductDTO> items = hasNext ? rows.subList(0, pageSize) : rows;
+        return ProductPageDTO.builder()
+                .items(items)
+                .nextCursor(hasNext ? items.get(items.size() - 1).getId() : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    @Override
+    public ResponseEntity<?> searchProducts(String query, Integer limit) {
+        int resultLimit = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(Math.max(limit, 1), MAX_SEARCH_LIMIT);
+        List<Long> rankedIds = productSearchIndex.search(query, resultLimit);
+        if (rankedIds.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        Map<Long, ProductDTO> products = new HashMap<>();
+        productRepository.findDTOsByIdIn(rankedIds).forEach(product -> products.put(product.getId(), product));
+        List<ProductDTO> results = rankedIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return ResponseEntity.ok(results);
     }
 
     @Override
-    public ResponseEntity<?> getAllProducts() {
-        List<ProductDTO> products = productRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> autocomplete(String prefix, Integer limit) {
+        int resultLimit = limit == null ? DEFAULT_SUGGESTION_LIMIT : Math.min(Math.max(limit, 1), MAX_SEARCH_LIMIT);
+        return ResponseEntity.ok(productSearchIndex.autocomplete(prefix, resultLimit));
     }
 
+    /**
+     * Updates the product in a {@link ConflictRetry} transaction, so an update racing another write
+     * to the same product re-reads it instead of overwriting it. When the request carries the
+     * version the client read, a product changed since then is left alone and a 409 carries its
+     * current state; so does one that keeps conflicting after the last retry.
+     */
     @Override
     public ResponseEntity<?> updateProduct(Long id, ProductRequestDTO productRequestDTO) throws IOException {
-        Product product = productRepository.findById(id).orElse(null);
-        if (product == null) {
+        if (productRepository.findById(id).isEmpty()) {
             return ResponseEntity.status(404).body("Product not found");
         }
-        Category category = categoryRepository.findById(productRequestDTO.getCategoryId()).orElse(null);
-        if (category == null) {
+        if (!categoryRegistry.contains(productRequestDTO.getCategoryId())) {
             return ResponseEntity.status(404).body("Category not found");
         }
+        if (!isStorablePrice(productRequestDTO.getPrice())) {
+            return ResponseEntity.status(400).body("Invalid price");
+        }
 
-        if (productRequestDTO.getImage() != null && !productRequestDTO.getImage().isEmpty()) {
-            if (product.getImageURL() != null) {
-                String publicId = extractPublicId(product.getImageURL());
-                cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+        Path image = spoolImage(productRequestDTO);
+        boolean uploading = false;
+        try {
+            ResponseEntity<?> response = conflictRetry.execute(() -> applyUpdate(id, productRequestDTO, image));
+            uploading = response.getStatusCode().is2xxSuccessful();
+            return response;
+        } catch (OptimisticLockingFailureException e) {
+            return productRepository.findById(id)
+                    .<ResponseEntity<?>>map(this::conflict)
+                    .orElseGet(() -> ResponseEntity.status(404).body("Product not found"));
+        } finally {
+            if (image != null && !uploading) {
+                Files.deleteIfExists(image);
             }
-            Map uploadResult = cloudinary.uploader().upload(productRequestDTO.getImage().getBytes(),
-                    ObjectUtils.asMap("resource_type", "image"));
-            product.setImageURL(uploadResult.get("secure_url").toString());
         }
-
-        product.setName(productRequestDTO.getName());
-        product.setDescription(productRequestDTO.getDescription());
-        product.setLevel(productRequestDTO.getLevel());
-        product.setPrice(productRequestDTO.getPrice());
-        product.setPublisher(productRequestDTO.getPublisher());
-        product.setQuantity(productRequestDTO.getQuantity());
-        product.setCategory(category);
-        product = productRepository.save(product);
-        return ResponseEntity.ok(convertToDTO(product));
     }
 
     @Override
@@ -110,31 +188,90 @@ public class ProductServiceImpl implements ProductService {
         if (product == null) {
             return ResponseEntity.status(404).body("Product not found");
         }
+        productRepository.deleteById(id);
         if (product.getImageURL() != null) {
-            String publicId = extractPublicId(product.getImageURL());
-            cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+            productImageUploader.destroy(product.getImageURL());
         }
-        productRepository.deleteById(id);
+        productSearchIndex.remove(id);
+        productCache.evict(id);
         return ResponseEntity.ok().build();
     }
 
-    private ProductDTO convertToDTO(Product product) {
-        ProductDTO dto = new ProductDTO();
-        dto.setId(product.getId());
-        dto.setName(product.getName());
-        dto.setDescription(product.getDescription());
-        dto.setLevel(product.getLevel());
-        dto.setPrice(product.getPrice());
-        dto.setPublisher(product.getPublisher());
-        dto.setQuantity(product.getQuantity());
-        dto.setImageURL(product.getImageURL());
-        dto.setCategoryId(product.getCategory().getId());
-        return dto;
+    // One attempt of updateProduct; the upload, cache eviction and reindexing only happen once it commits.
+    private ResponseEntity<?> applyUpdate(Long id, ProductRequestDTO productRequestDTO, Path image) {
+        Product product = productRepository.findById(id).orElse(null);
+        if (product == null) {
+            return ResponseEntity.status(404).body("Product not found");
+        }
+        if (productRequestDTO.getVersion() != null && !productRequestDTO.getVersion().equals(product.getVersion())) {
+            return conflict(product);
+        }
+
+        String previousImageURL = product.getImageURL();
+        product.setName(productRequestDTO.getName());
+        product.setDescription(productRequestDTO.getDescription());
+        product.setLevel(productRequestDTO.getLevel());
+        product.setPrice(scaled(productRequestDTO.getPrice()));
+        product.setPublisher(productRequestDTO.getPublisher());
+        product.setQuantity(productRequestDTO.getQuantity());
+        product.setCategory(categoryRepository.getReferenceById(productRequestDTO.getCategoryId()));
+        String uploadId = markImagePending(product, image);
+        // Flushed here so a lost race fails this attempt and the response carries the new version.
+        product = productRepository.saveAndFlush(product);
+        ProductDTO productDTO = productDTOMapper.apply(product);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (image != null) {
+                    productImageUploader.upload(id, uploadId, image, previousImageURL);
+                }
+                productSearchIndex.index(productDTO);
+                productCache.evict(id);
+            }
+        });
+        return ResponseEntity.ok(productDTO);
+    }
+
+    // A price with more decimals than the column keeps would be rounded silently by the database, so it
+    // is refused; trailing zeros do not count. A missing price is refused too, since cart totals need one.
+    private static boolean isStorablePrice(BigDecimal price) {
+        if (price == null) {
+            return false;
+        }
+        BigDecimal stripped = price.stripTrailingZeros();
+        return price.signum() >= 0
+                && stripped.scale() <= PRICE_SCALE
+                && stripped.precision() - stripped.scale() <= PRICE_INTEGER_DIGITS;
+    }
+
+    private static BigDecimal scaled(BigDecimal price) {
+        return price.setScale(PRICE_SCALE, RoundingMode.UNNECESSARY);
     }
 
-    private String extractPublicId(String imageURL) {
-        String[] parts = imageURL.split("/");
-        String fileName = parts[parts.length - 1];
-        return fileName.split("\\.")[0];
+    private ResponseEntity<?> conflict(Product current) {
+        return ResponseEntity.status(409).body(Map.of(
+                "error", "Product was modified concurrently",
+                "current", productDTOMapper.apply(current)));
+    }
+
+    private Path spoolImage(ProductRequestDTO productRequestDTO) throws IOException {
+        if (productRequestDTO.getImage() == null || productRequestDTO.getImage().isEmpty()) {
+            return null;
+        }
+        return productImageUploader.spool(productRequestDTO.getImage());
+    }
+
+    /**
+     * Marks the product's image as pending when a new one was sent, keeping the current URL until
+     * the upload completes. Returns the id the upload must present to replace the image.
+     */
+    private String markImagePending(Product product, Path image) {
+        if (image == null) {
+            return null;
+        }
+        String uploadId = productImageUploader.newUploadId();
+        product.setImageStatus(ImageStatus.PENDING);
+        product.setImageUploadId(uploadId);
+        return uploadId;
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.tn.maktba.service.sms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link SmsService} for local development and tests, selected with {@code sms.provider=local}.
+ * Logs each message and keeps it in memory instead of calling Twilio.
+ */
+@Service
+@ConditionalOnProperty(name = "sms.provider", havingValue = "local")
+public class LocalSmsService implements SmsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalSmsService.class);
+
+    private final List<SentSms> sentMessages = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void sendSms(String phoneNumber, String message) {
+        sentMessages.add(new SentSms(phoneNumber, message));
+        LOGGER.info("SMS to {}: {}", phoneNumber, message);
+    }
+
+    public List<SentSms> getSentMessages() {
+        return List.copyOf(sentMessages);
+    }
+
+    public record SentSms(String phoneNumber, String message) {}
+}
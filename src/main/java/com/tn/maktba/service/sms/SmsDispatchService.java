@@ -0,0 +1,14 @@
+package com.tn.maktba.service.sms;
+
+import com.tn.maktba.model.sms.SmsDispatch;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SmsDispatchService {
+    void enqueue(String phoneNumber, String message);
+    List<SmsDispatch> claimDue(int limit);
+    void markSent(Long dispatchId);
+    void markFailed(Long dispatchId, String error);
+    void postpone(Long dispatchId, Instant notBefore);
+}
@@ -0,0 +1,147 @@
+package com.tn.maktba.service.sms;
+
+import com.tn.maktba.model.sms.SmsDispatch;
+import com.tn.maktba.model.sms.SmsDispatchStatus;
+import com.tn.maktba.repository.SmsDispatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transactional side of the SMS outbox. Messages are enqueued inside the caller's transaction, so
+ * an SMS exists if and only if the data it announces was committed, and are then claimed in
+ * batches by {@link SmsDispatchWorker}. Failed sends are retried with exponential backoff and
+ * jitter; a message that still fails after {@code sms.dispatch.max-attempts} is dead-lettered.
+ */
+@Service
+public class SmsDispatchServiceImpl implements SmsDispatchService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmsDispatchServiceImpl.class);
+    private static final List<SmsDispatchStatus> CLAIMABLE = List.of(SmsDispatchStatus.PENDING, SmsDispatchStatus.SENDING);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final SmsDispatchRepository smsDispatchRepository;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+
+    public SmsDispatchServiceImpl(SmsDispatchRepository smsDispatchRepository,
+                                  @Value("${sms.dispatch.max-attempts:6}") int maxAttempts,
+                                  @Value("${sms.dispatch.initial-backoff:5s}") Duration initialBackoff,
+                                  @Value("${sms.dispatch.max-backoff:10m}") Duration maxBackoff,
+                                  @Value("${sms.dispatch.lease:1m}") Duration lease,
+                                  MeterRegistry meterRegistry) {
+        this.smsDispatchRepository = smsDispatchRepository;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.sentCounter = outcomeCounter(meterRegistry, "sent");
+        this.retriedCounter = outcomeCounter(meterRegistry, "retried");
+        this.deadCounter = outcomeCounter(meterRegistry, "dead");
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String phoneNumber, String message) {
+        Instant now = Instant.now();
+        smsDispatchRepository.save(SmsDispatch.builder()
+                .phoneNumber(phoneNumber)
+                .message(message)
+                .status(SmsDispatchStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    /**
+     * Claims up to {@code limit} due messages, including SENDING messages whose lease ran out because
+     * their worker died. Rows locked by another worker are skipped, so concurrent workers and
+     * instances never claim the same message.
+     */
+    @Override
+    @Transactional
+    public List<SmsDispatch> claimDue(int limit) {
+        Instant now = Instant.now();
+        List<SmsDispatch> due = smsDispatchRepository.findDueForUpdate(CLAIMABLE, now, Limit.of(limit));
+        if (!due.isEmpty()) {
+            smsDispatchRepository.lease(due.stream().map(SmsDispatch::getId).toList(),
+                    SmsDispatchStatus.SENDING, now.plus(lease));
+        }
+        return due;
+    }
+
+    @Override
+    @Transactional
+    public void markSent(Long dispatchId) {
+        smsDispatchRepository.findById(dispatchId).ifPresent(dispatch -> {
+            dispatch.setStatus(SmsDispatchStatus.SENT);
+            dispatch.setAttempts(dispatch.getAttempts() + 1);
+            dispatch.setSentAt(Instant.now());
+            dispatch.setLastError(null);
+            sentCounter.increment();
+        });
+    }
+
+    @Override
+    @Transactional
+    public void markFailed(Long dispatchId, String error) {
+        smsDispatchRepository.findById(dispatchId).ifPresent(dispatch -> {
+            int attempts = dispatch.getAttempts() + 1;
+            dispatch.setAttempts(attempts);
+            dispatch.setLastError(error == null || error.length() <= MAX_ERROR_LENGTH
+                    ? error
+                    : error.substring(0, MAX_ERROR_LENGTH));
+            if (attempts >= maxAttempts) {
+                dispatch.setStatus(SmsDispatchStatus.DEAD);
+                deadCounter.increment();
+                LOGGER.error("SMS {} to {} dead-lettered after {} attempts: {}",
+                        dispatchId, dispatch.getPhoneNumber(), attempts, error);
+                return;
+            }
+            dispatch.setStatus(SmsDispatchStatus.PENDING);
+            dispatch.setNextAttemptAt(Instant.now().plus(backoff(attempts)));
+            retriedCounter.increment();
+        });
+    }
+
+    @Override
+    @Transactional
+    public void postpone(Long dispatchId, Instant notBefore) {
+        smsDispatchRepository.findById(dispatchId).ifPresent(dispatch -> {
+            dispatch.setStatus(SmsDispatchStatus.PENDING);
+            dispatch.setNextAttemptAt(notBefore);
+        });
+    }
+
+    // initialBackoff * 2^(attempts - 1), capped at maxBackoff, with the upper half jittered
+    private Duration backoff(int attempts) {
+        long exponential = initialBackoff.toMillis() << Math.min(attempts - 1, 20);
+        long capped = Math.min(exponential, maxBackoff.toMillis());
+        long half = capped / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("sms.dispatch")
+                .description("SMS delivery attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
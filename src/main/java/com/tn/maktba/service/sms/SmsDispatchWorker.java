@@ -0,0 +1,139 @@
+package com.tn.maktba.service.sms;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tn.maktba.model.sms.SmsDispatch;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers queued SMS messages outside of any request or transaction. Each poll claims a batch of
+ * due messages and sends them on a small worker pool, so a slow provider only delays the queue.
+ * Sends to a single number are rate limited; messages over the limit are postponed rather than
+ * dropped. The limit is tracked per instance.
+ */
+@Component
+@ConditionalOnProperty(name = "sms.dispatch.enabled", havingValue = "true", matchIfMissing = true)
+public class SmsDispatchWorker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmsDispatchWorker.class);
+
+    private final SmsDispatchService smsDispatchService;
+    private final SmsService smsService;
+    private final int batchSize;
+    private final int maxPerNumber;
+    private final Duration rateLimitWindow;
+    private final ExecutorService workers;
+    // phone number -> send times within the current rate limit window, oldest first
+    private final Cache<String, Deque<Instant>> recentSends;
+
+    public SmsDispatchWorker(SmsDispatchService smsDispatchService, SmsService smsService,
+                             @Value("${sms.dispatch.workers:4}") int workerCount,
+                             @Value("${sms.dispatch.batch-size:50}") int batchSize,
+                             @Value("${sms.dispatch.rate-limit.max-per-number:3}") int maxPerNumber,
+                             @Value("${sms.dispatch.rate-limit.window:10m}") Duration rateLimitWindow) {
+        this.smsDispatchService = smsDispatchService;
+        this.smsService = smsService;
+        this.batchSize = batchSize;
+        this.maxPerNumber = maxPerNumber;
+        this.rateLimitWindow = rateLimitWindow;
+        this.workers = Executors.newFixedThreadPool(workerCount, Thread.ofPlatform().name("sms-dispatch-", 0).factory());
+        this.recentSends = Caffeine.newBuilder()
+                .expireAfterAccess(rateLimitWindow)
+                .build();
+    }
+
+    /**
+     * Claims and delivers due messages until the queue has nothing more to send right now. Waits for
+     * each batch to finish so claimed messages never sit in a local queue past their lease.
+     */
+    @Scheduled(fixedDelayString = "${sms.dispatch.poll-interval-ms:1000}")
+    public void dispatchDue() {
+        List<SmsDispatch> batch;
+        do {
+            batch = smsDispatchService.claimDue(batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Callable<Void>> deliveries = new ArrayList<>(batch.size());
+            for (SmsDispatch dispatch : batch) {
+                deliveries.add(() -> {
+                    deliver(dispatch);
+                    return null;
+                });
+            }
+            try {
+                workers.invokeAll(deliveries);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void deliver(SmsDispatch dispatch) {
+        Instant now = Instant.now();
+        Instant notBefore = acquire(dispatch.getPhoneNumber(), now);
+        if (notBefore != null) {
+            smsDispatchService.postpone(dispatch.getId(), notBefore);
+            return;
+        }
+        try {
+            smsService.sendSms(dispatch.getPhoneNumber(), dispatch.getMessage());
+        } catch (RuntimeException e) {
+            release(dispatch.getPhoneNumber(), now);
+            LOGGER.warn("Sending SMS {} failed on attempt {}: {}", dispatch.getId(), dispatch.getAttempts() + 1, e.getMessage());
+            smsDispatchService.markFailed(dispatch.getId(), e.getMessage());
+            return;
+        }
+        smsDispatchService.markSent(dispatch.getId());
+    }
+
+    /**
+     * Records a send to {@code phoneNumber} at {@code now} if it is under the limit and returns null;
+     * otherwise returns the instant at which the oldest send leaves the window.
+     */
+    private Instant acquire(String phoneNumber, Instant now) {
+        Deque<Instant> sends = recentSends.get(phoneNumber, key -> new ArrayDeque<>());
+        synchronized (sends) {
+            while (!sends.isEmpty() && !sends.peekFirst().plus(rateLimitWindow).isAfter(now)) {
+                sends.pollFirst();
+            }
+            if (sends.size() >= maxPerNumber) {
+                return sends.peekFirst().plus(rateLimitWindow);
+            }
+            sends.addLast(now);
+            return null;
+        }
+    }
+
+    // Failed sends do not count against the limit.
+    private void release(String phoneNumber, Instant sentAt) {
+        Deque<Instant> sends = recentSends.getIfPresent(phoneNumber);
+        if (sends != null) {
+            synchronized (sends) {
+                sends.removeLastOccurrence(sentAt);
+            }
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.tn.maktba.service.sms;
 import com.tn.maktba.model.sms.TwilioConfiguration;
 import com.twilio.rest.api.v2010.account.Message;
 import com.twilio.type.PhoneNumber;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnProperty(name = "sms.provider", havingValue = "twilio", matchIfMissing = true)
 public class SmsServiceImpl implements SmsService {
 
     private final TwilioConfiguration twilioConfiguration;
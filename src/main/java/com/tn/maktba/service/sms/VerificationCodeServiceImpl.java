@@ -16,11 +16,12 @@ import java.time.Instant;
 public class VerificationCodeServiceImpl implements VerificationCodeService {
 
     private final VerificationCodeRepository verificationCodeRepository;
-    private final SmsService smsService;
+    private final SmsDispatchService smsDispatchService;
 
-    public VerificationCodeServiceImpl(VerificationCodeRepository verificationCodeRepository, SmsService smsService) {
+    public VerificationCodeServiceImpl(VerificationCodeRepository verificationCodeRepository,
+                                       SmsDispatchService smsDispatchService) {
         this.verificationCodeRepository = verificationCodeRepository;
-        this.smsService = smsService;
+        this.smsDispatchService = smsDispatchService;
     }
 
     @Override
@@ -39,7 +40,8 @@ public class VerificationCodeServiceImpl implements VerificationCodeService {
 
         verificationCodeRepository.save(verificationCode);
         String message = String.format("Your verification code is: %s", code);
-        smsService.sendSms(user.getPhoneNumber(), message);
+        // Sent by SmsDispatchWorker once this transaction commits.
+        smsDispatchService.enqueue(user.getPhoneNumber(), message);
         return code;
     }
 
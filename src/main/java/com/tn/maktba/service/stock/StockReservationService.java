@@ -0,0 +1,13 @@
+package com.tn.maktba.service.stock;
+
+import com.tn.maktba.dto.product.StockShortageDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface StockReservationService {
+    Map<Long, Integer> lockStock(Collection<Long> productIds);
+    void reserve(Map<Long, Integer> quantitiesByProduct);
+    List<StockShortageDTO> findShortages(Map<Long, Integer> quantitiesByProduct);
+}
@@ -0,0 +1,172 @@
+package com.tn.maktba.service.stock;
+
+import com.tn.maktba.dto.product.ProductStockDTO;
+import com.tn.maktba.dto.product.StockShortageDTO;
+import com.tn.maktba.exceptions.InsufficientStockException;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.product.ProductCache;
+import jakarta.persistence.EntityManager;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Decrements product stock for a whole order in one transaction. Each line is a conditional
+ * {@code UPDATE} that only succeeds while enough stock remains, so concurrent reservations can
+ * never drive a quantity below zero. Lines are applied in product id order so that two
+ * transactions touching the same products always lock rows in the same order.
+ */
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final String DECREMENT_STOCK =
+            "UPDATE product SET quantity = quantity - ?, version = version + 1 WHERE id = ? AND quantity >= ?";
+
+    private static final String LOCK_STOCK =
+            "SELECT id, quantity FROM product WHERE id IN (%s) ORDER BY id FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final EntityManager entityManager;
+
+    public StockReservationServiceImpl(JdbcTemplate jdbcTemplate, ProductRepository productRepository,
+                                       ProductCache productCache, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Row-locks the given products in id order and returns their current stock. The locks are held
+     * until the surrounding transaction ends, so a caller can plan several reservations against the
+     * returned quantities and then {@link #reserve} them without racing other preparers.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Integer> lockStock(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = new ArrayList<>(new TreeSet<>(productIds));
+        String sql = String.format(LOCK_STOCK, String.join(",", Collections.nCopies(ids.size(), "?")));
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            int quantity = rs.getInt("quantity");
+            stock.put(rs.getLong("id"), rs.wasNull() ? 0 : quantity);
+        }, ids.toArray());
+        return stock;
+    }
+
+    /**
+     * Reserves every line or none: if any product lacks stock the transaction is rolled back and an
+     * {@link InsufficientStockException} lists each line that could not be served.
+     */
+    @Override
+    @Transactional
+    public void reserve(Map<Long, Integer> quantitiesByProduct) {
+        List<Map.Entry<Long, Integer>> lines = sortedLines(quantitiesByProduct);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        lockCachedProducts(lines.stream().map(Map.Entry::getKey).toList());
+        int[][] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+
+        Map<Long, Integer> failed = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updated[0][i] == 0) {
+                failed.put(lines.get(i).getKey(), lines.get(i).getValue());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new InsufficientStockException(findShortages(failed));
+        }
+
+        List<Long> productIds = lines.stream().map(Map.Entry::getKey).toList();
+        evictAfterCommit(productIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StockShortageDTO> findShortages(Map<Long, Integer> quantitiesByProduct) {
+        Map<Long, ProductStockDTO> stock = new HashMap<>();
+        productRepository.findStockByIdIn(quantitiesByProduct.keySet())
+                .forEach(product -> stock.put(product.id(), product));
+
+        List<StockShortageDTO> shortages = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : sortedLines(quantitiesByProduct)) {
+            ProductStockDTO product = stock.get(line.getKey());
+            int available = product == null || product.quantity() == null ? 0 : product.quantity();
+            if (available < line.getValue()) {
+                shortages.add(new StockShortageDTO(line.getKey(), product == null ? null : product.name(),
+                        line.getValue(), available));
+            }
+        }
+        return shortages;
+    }
+
+    private static List<Map.Entry<Long, Integer>> sortedLines(Map<Long, Integer> quantitiesByProduct) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>();
+        new TreeMap<>(quantitiesByProduct).forEach((productId, quantity) -> {
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than zero for product: " + productId);
+            }
+            lines.add(Map.entry(productId, quantity));
+        });
+        return lines;
+    }
+
+    /**
+     * Stock is updated with plain JDBC, which Hibernate does not see. To keep the second-level cache
+     * consistent the products are soft-locked in it first, as Hibernate does for its own updates:
+     * until the transaction ends, and for sessions that started before then, loads cannot put an
+     * older copy back. The locks are released when the transaction completes, either way.
+     */
+    private void lockCachedProducts(List<Long> productIds) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(Product.class);
+        EntityDataAccess cacheAccess = persister.getCacheAccessStrategy();
+        if (cacheAccess == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Map<Object, SoftLock> locks = new LinkedHashMap<>();
+        for (Long productId : productIds) {
+            Object key = cacheAccess.generateCacheKey(productId, persister, session.getFactory(), session.getTenantIdentifier());
+            locks.put(key, cacheAccess.lockItem(session, key, null));
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                locks.forEach((key, lock) -> cacheAccess.unlockItem(session, key, lock));
+            }
+        });
+    }
+
+    private void evictAfterCommit(List<Long> productIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productCache.evictAll(productIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                productCache.evictAll(productIds);
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.tn.maktba.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write of versioned entities in its own transaction, and runs it again in a new
+ * one when the commit loses an optimistic-locking race, so concurrent writers re-read instead of
+ * overwriting each other. Attempts are bounded by {@code conflict.retry.max-attempts}, with a
+ * jittered exponential backoff between them; the last conflict is rethrown for the caller to turn
+ * into a 409 with the current state.
+ */
+@Component
+public class ConflictRetry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConflictRetry.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public ConflictRetry(PlatformTransactionManager transactionManager,
+                         @Value("${conflict.retry.max-attempts:3}") int maxAttempts,
+                         @Value("${conflict.retry.initial-backoff:20ms}") Duration initialBackoff,
+                         @Value("${conflict.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Runs {@code action} in a new transaction, retrying on optimistic-locking conflicts. Must be
+     * called outside any transaction: a retry inside one would still see the stale state.
+     */
+    public <T> T execute(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("ConflictRetry must not be called inside a transaction");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                LOGGER.debug("Optimistic locking conflict on attempt {}, retrying: {}", attempt, e.getMessage());
+                try {
+                    Thread.sleep(backoff(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // initialBackoff * 2^(attempt - 1), capped at maxBackoff, with the upper half jittered
+    private Duration backoff(int attempt) {
+        long exponential = initialBackoff.toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(exponential, maxBackoff.toMillis());
+        long half = capped / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.tn.maktba;
+
+import com.tn.maktba.model.cart.Cart;
+import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderItem;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.repository.UserRepository;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Saves the users, products, carts and orders the repository and service tests start from. Every
+ * product costs 1.00; the id card number doubles as the phone number, so it must be unique per test.
+ */
+@TestComponent
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final CartRepository cartRepository;
+    private final OrderRepository orderRepository;
+
+    public TestFixtures(UserRepository userRepository, ProductRepository productRepository,
+                        CartRepository cartRepository, OrderRepository orderRepository) {
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.cartRepository = cartRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    public UserEntity saveUser(String idCartNumber) {
+        return userRepository.save(UserEntity.builder()
+                .firstName("Test")
+                .lastName("User")
+                .phoneNumber(idCartNumber)
+                .idCartNumber(idCartNumber)
+                .password("secret")
+                .build());
+    }
+
+    public Product saveProduct(String name, int quantity) {
+        return saveProduct(name, quantity, null);
+    }
+
+    public Product saveProduct(String name, int quantity, Category category) {
+        return productRepository.save(Product.builder()
+                .name(name)
+                .price(new BigDecimal("1.00"))
+                .quantity(quantity)
+                .category(category)
+                .build());
+    }
+
+    public Cart saveCart(UserEntity user) {
+        return cartRepository.save(Cart.builder().user(user).items(new ArrayList<>()).build());
+    }
+
+    public Cart saveCart(UserEntity user, Product product, int quantity) {
+        Cart cart = Cart.builder().user(user).items(new ArrayList<>()).build();
+        cart.getItems().add(CartItem.builder().cart(cart).product(product).quantity(quantity).build());
+        return cartRepository.save(cart);
+    }
+
+    public Long saveOrder(UserEntity user, Product product, int quantity) {
+        Order order = pendingOrder(user);
+        addItem(order, product, quantity);
+        return orderRepository.save(order).getId();
+    }
+
+    /**
+     * Saves a pending order whose lines keep the given order.
+     */
+    public Long saveOrder(UserEntity user, Product first, int firstQuantity, Product second, int secondQuantity) {
+        Order order = pendingOrder(user);
+        addItem(order, first, firstQuantity);
+        addItem(order, second, secondQuantity);
+        return orderRepository.save(order).getId();
+    }
+
+    private static Order pendingOrder(UserEntity user) {
+        return Order.builder()
+                .user(user)
+                .items(new ArrayList<>())
+                .totalPrice(BigDecimal.ZERO)
+                .createdAt(LocalDateTime.now())
+                .status(OrderStatus.PENDING)
+                .build();
+    }
+
+    private static void addItem(Order order, Product product, int quantity) {
+        order.getItems().add(OrderItem.builder().order(order).product(product).quantity(quantity).build());
+        order.setTotalPrice(order.getTotalPrice().add(product.getPrice().multiply(BigDecimal.valueOf(quantity))));
+    }
+}
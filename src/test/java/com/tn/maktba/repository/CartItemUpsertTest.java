@@ -0,0 +1,71 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.cart.CartLineDTO;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.EMBEDDED;
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseType.POSTGRES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link CartItemRepository#addQuantity} is a PostgreSQL {@code INSERT ... ON CONFLICT ... RETURNING},
+ * so it runs against an embedded PostgreSQL rather than H2.
+ */
+@DataJpaTest
+@Import(TestFixtures.class)
+@AutoConfigureEmbeddedDatabase(type = POSTGRES, provider = EMBEDDED)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartItemUpsertTest {
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void addQuantityInsertsThenIncreasesTheLine() {
+        Long cartId = fixtures.saveCart(fixtures.saveUser("12121212")).getId();
+        Long productId = fixtures.saveProduct("Atlas", 10).getId();
+
+        assertThat(cartItemRepository.addQuantity(cartId, productId, 3)).isEqualTo(3);
+        assertThat(cartItemRepository.addQuantity(cartId, productId, 4)).isEqualTo(7);
+
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(productId, 7));
+    }
+
+    @Test
+    void addQuantityRefusesAnIncreaseBeyondStock() {
+        Long cartId = fixtures.saveCart(fixtures.saveUser("13131313")).getId();
+        Long productId = fixtures.saveProduct("Globe", 5).getId();
+
+        assertThat(cartItemRepository.addQuantity(cartId, productId, 4)).isEqualTo(4);
+        assertThat(cartItemRepository.addQuantity(cartId, productId, 2)).isNull();
+        assertThat(cartItemRepository.addQuantity(cartId, productId, 1)).isEqualTo(5);
+
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(productId, 5));
+    }
+
+    @Test
+    void linesOfDifferentProductsAndCartsAreSeparate() {
+        Long firstCart = fixtures.saveCart(fixtures.saveUser("14141414")).getId();
+        Long secondCart = fixtures.saveCart(fixtures.saveUser("15151515")).getId();
+        Long pen = fixtures.saveProduct("Pen", 10).getId();
+        Long ink = fixtures.saveProduct("Ink", 10).getId();
+
+        cartItemRepository.addQuantity(firstCart, pen, 1);
+        cartItemRepository.addQuantity(firstCart, ink, 2);
+        cartItemRepository.addQuantity(secondCart, pen, 3);
+
+        assertThat(cartItemRepository.findLinesByCartId(firstCart))
+                .containsExactlyInAnyOrder(new CartLineDTO(pen, 1), new CartLineDTO(ink, 2));
+        assertThat(cartItemRepository.findLinesByCartId(secondCart)).containsExactly(new CartLineDTO(pen, 3));
+    }
+}
@@ -0,0 +1,113 @@
+package com.tn.maktba.repository;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationService;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({TestFixtures.class, StockReservationServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void repeatedProductLookupsSkipTheDatabase() {
+        Category category = categoryRepository.save(Category.builder().name("Books").build());
+        Long productId = fixtures.saveProduct("Novel", 10, category).getId();
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(productRepository.findById(productId)).isPresent();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics("product").getHitCount()).isEqualTo(4);
+        assertThat(statistics.getDomainDataRegionStatistics("category").getHitCount()).isEqualTo(4);
+    }
+
+    @Test
+    void repeatedUserLookupsByCartNumberSkipTheDatabase() {
+        fixtures.saveUser("33333333");
+        statistics.clear();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(userRepository.findByIdCartNumber("33333333")).isPresent();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(4);
+    }
+
+    @Test
+    void userUpdateInvalidatesCachedLookup() {
+        fixtures.saveUser("44444444");
+        UserEntity user = userRepository.findByIdCartNumber("44444444").orElseThrow();
+
+        user.setAddress("Tunis");
+        userRepository.save(user);
+
+        assertThat(userRepository.findByIdCartNumber("44444444"))
+                .get()
+                .extracting(UserEntity::getAddress)
+                .isEqualTo("Tunis");
+    }
+
+    @Test
+    void stockReservationEvictsCachedProduct() {
+        Long productId = fixtures.saveProduct("Pencil", 10).getId();
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isEqualTo(10);
+
+        stockReservationService.reserve(Map.of(productId, 3));
+
+        statistics.clear();
+        assertThat(productRepository.findById(productId).orElseThrow().getQuantity()).isEqualTo(7);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
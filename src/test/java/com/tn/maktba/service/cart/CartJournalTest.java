@@ -0,0 +1,100 @@
+package com.tn.maktba.service.cart;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void replaysSegmentsInOrder() throws Exception {
+        CartJournal journal = new CartJournal(directory, false);
+        journal.open(new Recorder());
+        journal.set(1, 10, 2);
+        journal.seal();
+        journal.set(1, 10, 5);
+        journal.clear(2);
+        journal.close();
+
+        Recorder recorder = new Recorder();
+        CartJournal reopened = new CartJournal(directory, false);
+        reopened.open(recorder);
+        reopened.close();
+
+        assertThat(recorder.records).containsExactly("S 1 10 2", "S 1 10 5", "C 2");
+    }
+
+    @Test
+    void dropsATornLastRecord() throws Exception {
+        Files.writeString(directory.resolve("cart-1.journal"), "S 1 10 2\nS 1 11 3\nS 1 1", StandardCharsets.US_ASCII);
+        Files.writeString(directory.resolve("cart-2.journal"), "C 1", StandardCharsets.US_ASCII);
+
+        Recorder recorder = new Recorder();
+        CartJournal journal = new CartJournal(directory, false);
+        journal.open(recorder);
+        journal.close();
+
+        assertThat(recorder.records).containsExactly("S 1 10 2", "S 1 11 3");
+    }
+
+    @Test
+    void skipsMalformedRecords() throws Exception {
+        Files.writeString(directory.resolve("cart-1.journal"), "S 1 10\nX 1\nS 1 x 2\nS 1 10 4\n", StandardCharsets.US_ASCII);
+
+        Recorder recorder = new Recorder();
+        CartJournal journal = new CartJournal(directory, false);
+        journal.open(recorder);
+        journal.close();
+
+        assertThat(recorder.records).containsExactly("S 1 10 4");
+    }
+
+    @Test
+    void sealsOnlyWrittenSegmentsAndDeletesTheSealedOnes() throws Exception {
+        CartJournal journal = new CartJournal(directory, false);
+        journal.open(new Recorder());
+
+        assertThat(journal.seal()).isEqualTo(1);
+        journal.set(1, 10, 2);
+        long sealed = journal.seal();
+        assertThat(sealed).isEqualTo(2);
+        journal.set(1, 10, 3);
+
+        journal.deleteBefore(sealed);
+        journal.close();
+
+        assertThat(segments()).containsExactly("cart-2.journal");
+        assertThat(Files.readString(directory.resolve("cart-2.journal"))).isEqualTo("S 1 10 3\n");
+    }
+
+    private List<String> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static final class Recorder implements CartJournal.Replay {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void set(long userId, long productId, int quantity) {
+            records.add("S " + userId + ' ' + productId + ' ' + quantity);
+        }
+
+        @Override
+        public void clear(long userId) {
+            records.add("C " + userId);
+        }
+    }
+}
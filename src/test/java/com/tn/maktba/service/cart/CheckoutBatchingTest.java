@@ -0,0 +1,93 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.model.cart.Cart;
+import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.service.order.OrderEventServiceImpl;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({TestFixtures.class, CartServiceImpl.class, OrderEventServiceImpl.class, StockReservationServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutBatchingTest {
+
+    private static final int LINES = 50;
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private CheckoutIdempotencyService checkoutIdempotencyService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void checkoutRunsAConstantNumberOfStatements() {
+        UserEntity user = fixtures.saveUser("55555555");
+        Cart cart = Cart.builder().user(user).items(new ArrayList<>()).build();
+        for (int i = 0; i < LINES; i++) {
+            Product product = fixtures.saveProduct("Product " + i, 10);
+            cart.getItems().add(CartItem.builder().cart(cart).product(product).quantity(1).build());
+        }
+        cartRepository.save(cart);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(cartService.confirmCart(user.getId()).getStatusCode().is2xxSuccessful()).isTrue();
+
+        // 4 reads (cart, its user, its items, stock), 4 sequence calls (the pooled optimizer reads
+        // order_item_seq twice on first use), one batch each for the order, its 50 items and its
+        // outbox event, and the cart version increment. Without batching the inserts alone would take
+        // 52 statements. The ordered quantities are then taken out of the cart lines with one JDBC
+        // batch and one delete, which Hibernate does not count.
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(LINES + 2);
+        assertThat(statistics.getEntityDeleteCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(12);
+
+        List<Order> orders = orderRepository.findAll();
+        assertThat(orders).hasSize(1);
+        assertThat(cartRepository.findById(cart.getId()).orElseThrow().getVersion()).isEqualTo(1L);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            assertThat(entityManager.createQuery("SELECT COUNT(i) FROM CartItem i", Long.class).getSingleResult()).isZero();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
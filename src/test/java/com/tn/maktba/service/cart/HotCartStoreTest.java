@@ -0,0 +1,255 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.cart.CartLineDTO;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartItemRepository;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import(TestFixtures.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotCartStoreTest {
+
+    @TempDir
+    private Path journalDirectory;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private FailingTransactionManager writeBacks;
+    private HotCartStore store;
+
+    @AfterEach
+    void shutdown() throws Exception {
+        if (store != null) {
+            writeBacks.failing = false;
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void recoveryReplaysTheJournalOverStoredCarts() throws Exception {
+        UserEntity user = fixtures.saveUser("81000001");
+        UserEntity other = fixtures.saveUser("81000002");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Product book = fixtures.saveProduct("Book", 10);
+        Product ink = fixtures.saveProduct("Ink", 10);
+        Long cartId = fixtures.saveCart(user, pen, 2).getId();
+        Long otherCartId = fixtures.saveCart(other, pen, 1).getId();
+        // The last record was torn by the crash and never acknowledged, so it is not replayed.
+        Files.writeString(journalDirectory.resolve("cart-1.journal"),
+                "S " + user.getId() + " " + book.getId() + " 3\n"
+                        + "S " + user.getId() + " " + pen.getId() + " 0\n"
+                        + "C " + other.getId() + "\n"
+                        + "S " + user.getId() + " " + ink.getId() + " 1",
+                StandardCharsets.US_ASCII);
+
+        openStore(Duration.ofMinutes(30));
+
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(book.getId(), 3));
+        assertThat(cartItemRepository.findLinesByCartId(otherCartId)).isEmpty();
+        assertThat(journalSegments()).containsExactly("cart-2.journal");
+    }
+
+    @Test
+    void journalIsKeptUntilEveryWriteBackSucceeds() throws Exception {
+        UserEntity user = fixtures.saveUser("81000003");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long cartId = fixtures.saveCart(user, pen, 1).getId();
+        openStore(Duration.ofMinutes(30));
+
+        store.add(user.getId(), pen.getId(), 2, 10);
+        writeBacks.failing = true;
+        store.flush();
+
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(pen.getId(), 1));
+        assertThat(journalSegments()).contains("cart-1.journal");
+        assertThat(Files.readString(journalDirectory.resolve("cart-1.journal")))
+                .isEqualTo("S " + user.getId() + " " + pen.getId() + " 3\n");
+
+        writeBacks.failing = false;
+        store.flush();
+
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(pen.getId(), 3));
+        assertThat(journalSegments()).containsExactly("cart-2.journal");
+    }
+
+    @Test
+    void idleEvictionDropsOnlyCleanCarts() throws Exception {
+        UserEntity clean = fixtures.saveUser("81000004");
+        UserEntity dirty = fixtures.saveUser("81000005");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long cleanCartId = fixtures.saveCart(clean, pen, 1).getId();
+        Long dirtyCartId = fixtures.saveCart(dirty, pen, 1).getId();
+        openStore(Duration.ZERO);
+
+        store.find(clean.getId());
+        store.add(dirty.getId(), pen.getId(), 1, 10);
+        writeBacks.failing = true;
+        store.flush();
+
+        // Change both carts behind the store's back: only the evicted one is read again.
+        cartItemRepository.deleteByCartId(cleanCartId);
+        cartItemRepository.deleteByCartId(dirtyCartId);
+
+        assertThat(store.find(clean.getId()).orElseThrow().lines()).isEmpty();
+        assertThat(store.find(dirty.getId()).orElseThrow().lines()).containsExactly(new CartLineDTO(pen.getId(), 2));
+    }
+
+    @Test
+    void orderedKeepsLinesAddedWhileTheOrderWasPlaced() throws Exception {
+        UserEntity user = fixtures.saveUser("81000006");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Product book = fixtures.saveProduct("Book", 10);
+        Long cartId = fixtures.saveCart(user, pen, 2).getId();
+        openStore(Duration.ofMinutes(30));
+        HotCartStore.CartSnapshot snapshot = store.find(user.getId()).orElseThrow();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            store.ordered(user.getId(), snapshot, Map.of(pen.getId(), 2));
+            store.add(user.getId(), pen.getId(), 1, 10);
+            store.add(user.getId(), book.getId(), 1, 10);
+        });
+
+        assertThat(store.find(user.getId()).orElseThrow().lines())
+                .containsExactlyInAnyOrder(new CartLineDTO(pen.getId(), 1), new CartLineDTO(book.getId(), 1));
+        assertThat(cartItemRepository.findLinesByCartId(cartId))
+                .containsExactlyInAnyOrder(new CartLineDTO(pen.getId(), 1), new CartLineDTO(book.getId(), 1));
+    }
+
+    @Test
+    void rolledBackOrderLeavesTheCartUntouched() throws Exception {
+        UserEntity user = fixtures.saveUser("81000007");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long cartId = fixtures.saveCart(user, pen, 2).getId();
+        openStore(Duration.ofMinutes(30));
+        HotCartStore.CartSnapshot snapshot = store.find(user.getId()).orElseThrow();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            store.ordered(user.getId(), snapshot, Map.of(pen.getId(), 2));
+            status.setRollbackOnly();
+        });
+
+        assertThat(store.find(user.getId()).orElseThrow().lines()).containsExactly(new CartLineDTO(pen.getId(), 2));
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).containsExactly(new CartLineDTO(pen.getId(), 2));
+        assertThat(journalSegments()).allSatisfy(segment ->
+                assertThat(Files.size(journalDirectory.resolve(segment))).isZero());
+
+        // The rolled-back checkout no longer holds the cart.
+        store.ordered(user.getId(), store.find(user.getId()).orElseThrow(), Map.of(pen.getId(), 2));
+        assertThat(store.find(user.getId()).orElseThrow().lines()).isEmpty();
+    }
+
+    @Test
+    void orderFromASnapshotOlderThanTheLastCheckoutIsRefused() throws Exception {
+        UserEntity user = fixtures.saveUser("81000008");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long cartId = fixtures.saveCart(user, pen, 2).getId();
+        openStore(Duration.ofMinutes(30));
+        HotCartStore.CartSnapshot first = store.find(user.getId()).orElseThrow();
+        HotCartStore.CartSnapshot second = store.find(user.getId()).orElseThrow();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            store.ordered(user.getId(), first, Map.of(pen.getId(), 2));
+            // Refused while the first checkout is in flight, and after it commits.
+            assertThatThrownBy(() -> store.ordered(user.getId(), second, Map.of(pen.getId(), 2)))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+        });
+        store.add(user.getId(), pen.getId(), 1, 10);
+
+        assertThatThrownBy(() -> store.ordered(user.getId(), second, Map.of(pen.getId(), 2)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(store.find(user.getId()).orElseThrow().lines()).containsExactly(new CartLineDTO(pen.getId(), 1));
+        assertThat(cartItemRepository.findLinesByCartId(cartId)).isEmpty();
+    }
+
+    private void openStore(Duration idleTimeout) throws Exception {
+        writeBacks = new FailingTransactionManager(transactionManager);
+        store = new HotCartStore(cartRepository, cartItemRepository, userRepository, productRepository,
+                writeBacks, 4, idleTimeout, journalDirectory, false);
+        store.recover();
+    }
+
+    private List<String> journalSegments() throws Exception {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * The store's write-back transactions, failing to start while {@code failing} is set.
+     */
+    private static final class FailingTransactionManager implements PlatformTransactionManager {
+        private final PlatformTransactionManager delegate;
+        volatile boolean failing;
+
+        FailingTransactionManager(PlatformTransactionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            if (failing) {
+                throw new CannotCreateTransactionException("Database unavailable");
+            }
+            return delegate.getTransaction(definition);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            delegate.commit(status);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            delegate.rollback(status);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.tn.maktba.service.cart;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.cart.CartDTO;
+import com.tn.maktba.dto.order.CartOrderDTO;
+import com.tn.maktba.model.cart.Cart;
+import com.tn.maktba.model.cart.CartItem;
+import com.tn.maktba.model.cart.CheckoutIdempotencyKey;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartItemRepository;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.CheckoutIdempotencyKeyRepository;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.service.order.OrderEventService;
+import com.tn.maktba.service.order.OrderEventServiceImpl;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({TestFixtures.class, CartServiceImpl.class, CheckoutIdempotencyServiceImpl.class,
+        OrderEventServiceImpl.class, StockReservationServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotentCheckoutTest {
+
+    private static final int RETRIES = 16;
+
+    @MockBean
+    private ProductCache productCache;
+
+    @SpyBean
+    private OrderEventServiceImpl orderEventService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CheckoutIdempotencyKeyRepository checkoutIdempotencyKeyRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Test
+    void concurrentRetriesCreateOneOrder() throws Exception {
+        UserEntity user = fixtures.saveUser("66666666");
+        Product book = fixtures.saveProduct("Book", 10);
+        fixtures.saveCart(user, book, 2);
+
+        List<ResponseEntity<?>> responses = confirmConcurrently(user.getId(), "checkout-1");
+
+        List<Order> orders = orderRepository.findByUserIdAndStatus(user.getId(), OrderStatus.PENDING);
+        assertThat(orders).hasSize(1);
+        Long orderId = orders.getFirst().getId();
+        assertThat(responses).allSatisfy(response -> {
+            assertThat(response.getStatusCode().value()).isEqualTo(200);
+            assertThat(((CartOrderDTO) response.getBody()).getOrderId()).isEqualTo(orderId);
+        });
+
+        // A late retry replays the original order even though the cart is now empty.
+        ResponseEntity<?> replay = cartService.confirmCart(user.getId(), "checkout-1");
+        assertThat(replay.getStatusCode().value()).isEqualTo(200);
+        assertThat(((CartOrderDTO) replay.getBody()).getOrderId()).isEqualTo(orderId);
+        assertThat(((CartOrderDTO) replay.getBody()).getItems()).hasSize(1);
+    }
+
+    @Test
+    void failedCheckoutDoesNotConsumeTheKey() {
+        UserEntity user = fixtures.saveUser("77777777");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Cart cart = fixtures.saveCart(user);
+
+        assertThat(cartService.confirmCart(user.getId(), "checkout-2").getStatusCode().value()).isEqualTo(400);
+
+        cartItemRepository.save(CartItem.builder().cart(cart).product(pen).quantity(1).build());
+
+        assertThat(cartService.confirmCart(user.getId(), "checkout-2").getStatusCode().value()).isEqualTo(200);
+        assertThat(orderRepository.findByUserIdAndStatus(user.getId(), OrderStatus.PENDING)).hasSize(1);
+    }
+
+    @Test
+    void expiredKeyCanBeReusedBeforeItIsPurged() {
+        UserEntity user = fixtures.saveUser("78787878");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        fixtures.saveCart(user, pen, 1);
+        Instant expired = Instant.now().minus(Duration.ofHours(25));
+        checkoutIdempotencyKeyRepository.save(CheckoutIdempotencyKey.builder()
+                .userId(user.getId())
+                .idempotencyKey("checkout-3")
+                .orderId(-1L)
+                .response("{\"orderId\":-1}")
+                .createdAt(expired)
+                .expiresAt(expired.plus(Duration.ofHours(24)))
+                .build());
+
+        ResponseEntity<?> response = cartService.confirmCart(user.getId(), "checkout-3");
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        Long orderId = ((CartOrderDTO) response.getBody()).getOrderId();
+        assertThat(orderRepository.findByUserIdAndStatus(user.getId(), OrderStatus.PENDING))
+                .singleElement()
+                .extracting(Order::getId)
+                .isEqualTo(orderId);
+        assertThat(checkoutIdempotencyKeyRepository.findResponse(user.getId(), "checkout-3", Instant.now()))
+                .hasValueSatisfying(stored -> assertThat(stored).contains("\"orderId\":" + orderId));
+    }
+
+    @Test
+    void concurrentCheckoutsOfOneCartPlaceOneOrder() throws Exception {
+        UserEntity user = fixtures.saveUser("79797979");
+        Product book = fixtures.saveProduct("Book", 10);
+        fixtures.saveCart(user, book, 2);
+        // Both checkouts have read the cart and placed their order before either commits.
+        CyclicBarrier placed = new CyclicBarrier(2);
+        doAnswer(invocation -> {
+            placed.await(30, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(AopTestUtils.<OrderEventService>getUltimateTargetObject(orderEventService))
+                .record(any(Order.class), eq(OrderEventType.CREATED));
+
+        List<ResponseEntity<?>> responses = concurrently(2, () -> cartService.confirmCart(user.getId()));
+
+        assertThat(responses).extracting(response -> response.getStatusCode().value())
+                .containsExactlyInAnyOrder(200, 409);
+        ResponseEntity<?> conflict = responses.stream()
+                .filter(response -> response.getStatusCode().value() == 409)
+                .findFirst()
+                .orElseThrow();
+        assertThat(((Map<?, ?>) conflict.getBody()).get("current")).isInstanceOf(CartDTO.class);
+        assertThat(orderRepository.findByUserIdAndStatus(user.getId(), OrderStatus.PENDING)).hasSize(1);
+        assertThat(cartItemRepository.findLinesByCartId(cartRepository.findIdByUserId(user.getId()).orElseThrow()))
+                .isEmpty();
+    }
+
+    private List<ResponseEntity<?>> confirmConcurrently(Long userId, String idempotencyKey) throws Exception {
+        return concurrently(RETRIES, () -> cartService.confirmCart(userId, idempotencyKey));
+    }
+
+    private List<ResponseEntity<?>> concurrently(int threads, Callable<ResponseEntity<?>> request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ResponseEntity<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+            List<ResponseEntity<?>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<?>> future : futures) {
+                responses.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
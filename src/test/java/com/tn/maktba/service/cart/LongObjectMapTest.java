@@ -0,0 +1,98 @@
+package com.tn.maktba.service.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongObjectMapTest {
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        LongObjectMap<String> map = new LongObjectMap<>(1);
+
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key, "v" + key);
+        }
+        map.put(500, "replaced");
+
+        assertThat(map.size()).isEqualTo(1_000);
+        for (long key = 1; key <= 1_000; key++) {
+            assertThat(map.get(key)).isEqualTo(key == 500 ? "replaced" : "v" + key);
+        }
+        assertThat(map.get(1_001)).isNull();
+    }
+
+    @Test
+    void removingFromACollisionChainKeepsTheRestReachable() {
+        // A full table of 8 keys in 16 slots makes probe chains unavoidable; remove from all of them.
+        LongObjectMap<Long> map = new LongObjectMap<>(8);
+        for (long key = 1; key <= 12; key++) {
+            map.put(key, key);
+        }
+
+        for (long key = 1; key <= 12; key += 2) {
+            map.remove(key);
+        }
+        map.remove(99);
+
+        assertThat(map.size()).isEqualTo(6);
+        for (long key = 1; key <= 12; key++) {
+            assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? key : null);
+        }
+    }
+
+    @Test
+    void matchesAHashMapUnderRandomPutsAndRemoves() {
+        LongObjectMap<Integer> map = new LongObjectMap<>(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            // a small key range keeps the table dense and the probe chains long
+            long key = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 2_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        Map<Long, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertThat(visited).isEqualTo(expected);
+    }
+
+    @Test
+    void removeIfVisitsEntriesShiftedIntoRemovedSlots() {
+        LongObjectMap<Long> map = new LongObjectMap<>(4);
+        for (long key = 1; key <= 500; key++) {
+            map.put(key, key);
+        }
+
+        map.removeIf((key, value) -> value % 3 != 0);
+
+        assertThat(map.size()).isEqualTo(166);
+        for (long key = 1; key <= 500; key++) {
+            assertThat(map.get(key)).isEqualTo(key % 3 == 0 ? key : null);
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveKeys() {
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+
+        assertThatThrownBy(() -> map.put(0, "zero")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> map.put(-1, "negative")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
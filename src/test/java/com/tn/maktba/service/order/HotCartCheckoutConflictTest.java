@@ -0,0 +1,123 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.cart.CartDTO;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.CartItemRepository;
+import com.tn.maktba.repository.CartRepository;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.service.cart.CartService;
+import com.tn.maktba.service.cart.CartServiceImpl;
+import com.tn.maktba.service.cart.CheckoutIdempotencyService;
+import com.tn.maktba.service.cart.HotCartStore;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest
+@Import({TestFixtures.class, CartServiceImpl.class, HotCartStore.class, StockReservationServiceImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotCartCheckoutConflictTest {
+
+    @DynamicPropertySource
+    static void inMemoryCarts(DynamicPropertyRegistry registry) throws Exception {
+        registry.add("cart.store", () -> "memory");
+        registry.add("cart.store.journal.directory", Files.createTempDirectory("cart-journal")::toString);
+    }
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private CheckoutIdempotencyService checkoutIdempotencyService;
+
+    @MockBean
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private HotCartStore hotCartStore;
+
+    @Test
+    void concurrentCheckoutsOfOneCartPlaceOneOrder() throws Exception {
+        UserEntity user = fixtures.saveUser("93000001");
+        Product book = fixtures.saveProduct("Book", 10);
+        assertThat(cartService.addToCart(user.getId(), book.getId(), 2).getStatusCode().value()).isEqualTo(200);
+        // Both checkouts have read the cart and placed their order before either commits.
+        CyclicBarrier placed = new CyclicBarrier(2);
+        doAnswer(invocation -> {
+            placed.await(30, TimeUnit.SECONDS);
+            return null;
+        }).when(orderEventService).record(any(Order.class), eq(OrderEventType.CREATED));
+
+        List<ResponseEntity<?>> responses = concurrently(() -> cartService.confirmCart(user.getId()));
+
+        assertThat(responses).extracting(response -> response.getStatusCode().value())
+                .containsExactlyInAnyOrder(200, 409);
+        ResponseEntity<?> conflict = responses.stream()
+                .filter(response -> response.getStatusCode().value() == 409)
+                .findFirst()
+                .orElseThrow();
+        assertThat(((Map<?, ?>) conflict.getBody()).get("current")).isInstanceOf(CartDTO.class);
+        assertThat(orderRepository.findByUserIdAndStatus(user.getId(), OrderStatus.PENDING)).hasSize(1);
+        assertThat(hotCartStore.find(user.getId()).orElseThrow().lines()).isEmpty();
+        assertThat(cartItemRepository.findLinesByCartId(cartRepository.findIdByUserId(user.getId()).orElseThrow()))
+                .isEmpty();
+    }
+
+    private static List<ResponseEntity<?>> concurrently(Callable<ResponseEntity<?>> request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<ResponseEntity<?>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<?>> future : executor.invokeAll(List.of(request, request), 60, TimeUnit.SECONDS)) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.order.CartOrderDTO;
+import com.tn.maktba.dto.order.ItemDTO;
+import com.tn.maktba.model.order.Order;
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import com.tn.maktba.util.ConflictRetry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Import({TestFixtures.class, OrderServiceImpl.class, StockReservationServiceImpl.class, ConflictRetry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "conflict.retry.max-attempts=3",
+        "conflict.retry.initial-backoff=1ms",
+        "conflict.retry.max-backoff=4ms"
+})
+class OrderConflictTest {
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void modificationRetriesAfterLosingARace() {
+        UserEntity user = fixtures.saveUser("92000001");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long orderId = fixtures.saveOrder(user, pen, 1);
+        long version = orderRepository.findById(orderId).orElseThrow().getVersion();
+        changeConcurrently(orderId, 1);
+
+        ResponseEntity<?> response = orderService.modifyOrder(user.getId(), orderId, Map.of(pen.getId(), 3));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        verify(orderEventService, times(2)).record(any(Order.class), eq(OrderEventType.MODIFIED));
+        Order stored = orderRepository.findById(orderId).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo(OrderStatus.MODIFIED);
+        assertThat(stored.getTotalPrice()).isEqualByComparingTo("3.00");
+        // One concurrent change, then the retry's own.
+        assertThat(stored.getVersion()).isEqualTo(version + 2);
+    }
+
+    @Test
+    void modificationThatKeepsLosingGetsTheCurrentOrder() {
+        UserEntity user = fixtures.saveUser("92000002");
+        Product pen = fixtures.saveProduct("Pen", 10);
+        Long orderId = fixtures.saveOrder(user, pen, 1);
+        long version = orderRepository.findById(orderId).orElseThrow().getVersion();
+        changeConcurrently(orderId, Integer.MAX_VALUE);
+
+        ResponseEntity<?> response = orderService.modifyOrder(user.getId(), orderId, Map.of(pen.getId(), 3));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(409);
+        CartOrderDTO current = (CartOrderDTO) ((Map<?, ?>) response.getBody()).get("current");
+        assertThat(current.getOrderId()).isEqualTo(orderId);
+        assertThat(current.getItems()).extracting(ItemDTO::getQuantity).containsExactly(1);
+        verify(orderEventService, times(3)).record(any(Order.class), eq(OrderEventType.MODIFIED));
+        Order stored = orderRepository.findById(orderId).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(stored.getVersion()).isEqualTo(version + 3);
+    }
+
+    // The first `times` attempts see the order changed by another transaction before they commit.
+    private void changeConcurrently(Long orderId, int times) {
+        AtomicInteger remaining = new AtomicInteger(times);
+        doAnswer(invocation -> {
+            if (remaining.getAndDecrement() > 0) {
+                CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                        "UPDATE orders SET version = version + 1 WHERE id = ?", orderId)).get(10, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(orderEventService).record(any(Order.class), eq(OrderEventType.MODIFIED));
+    }
+}
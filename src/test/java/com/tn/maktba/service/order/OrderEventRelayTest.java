@@ -0,0 +1,102 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.order.OrderEventDTO;
+import com.tn.maktba.exceptions.InsufficientStockException;
+import com.tn.maktba.model.order.OrderEventType;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.OrderEventRepository;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import com.tn.maktba.util.ConflictRetry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@Import({TestFixtures.class, OrderServiceImpl.class, OrderEventServiceImpl.class, StockReservationServiceImpl.class,
+        ConflictRetry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderEventRelayTest {
+
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderEventRepository orderEventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void rolledBackTransitionRecordsNoEvent() {
+        UserEntity user = fixtures.saveUser("91000001");
+        Product pen = fixtures.saveProduct("Scarce pen", 1);
+        Long orderId = fixtures.saveOrder(user, pen, 2);
+
+        assertThatThrownBy(() -> orderService.prepareOrder(orderId)).isInstanceOf(InsufficientStockException.class);
+
+        assertThat(orderRepository.findById(orderId).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(orderEventRepository.findAll()).noneMatch(event -> event.getOrderId().equals(orderId));
+    }
+
+    @Test
+    void relayPublishesEveryEventOnceInIdOrder() {
+        UserEntity user = fixtures.saveUser("91000002");
+        Product pen = fixtures.saveProduct("Pen", 100);
+        Long prepared = fixtures.saveOrder(user, pen, 1);
+        Long modified = fixtures.saveOrder(user, pen, 1);
+        Long removed = fixtures.saveOrder(user, pen, 1);
+
+        orderService.modifyOrder(user.getId(), modified, Map.of(pen.getId(), 3));
+        orderService.prepareOrder(prepared);
+        orderService.removeOrder(removed);
+        orderService.modifyOrder(user.getId(), modified, Map.of(pen.getId(), 2));
+        orderService.prepareOrder(modified);
+
+        List<OrderEventDTO> published = new ArrayList<>();
+        // A batch smaller than the backlog makes the relay claim several batches in one run.
+        OrderEventRelay relay = new OrderEventRelay(orderEventService, event -> published.add((OrderEventDTO) event),
+                2, Duration.ofDays(7));
+        relay.relay();
+        relay.relay();
+
+        assertThat(published).extracting(OrderEventDTO::id).isSorted().doesNotHaveDuplicates();
+        assertThat(published)
+                .filteredOn(event -> Set.of(prepared, modified, removed).contains(event.orderId()))
+                .extracting(OrderEventDTO::orderId, OrderEventDTO::type)
+                .containsExactly(
+                        tuple(modified, OrderEventType.MODIFIED),
+                        tuple(prepared, OrderEventType.PROCESSED),
+                        tuple(removed, OrderEventType.REMOVED),
+                        tuple(modified, OrderEventType.MODIFIED),
+                        tuple(modified, OrderEventType.PROCESSED));
+        assertThat(orderEventRepository.findAll()).allMatch(event -> event.getPublishedAt() != null);
+    }
+}
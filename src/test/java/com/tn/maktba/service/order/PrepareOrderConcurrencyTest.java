@@ -0,0 +1,215 @@
+package com.tn.maktba.service.order;
+
+import com.tn.maktba.TestFixtures;
+import com.tn.maktba.dto.order.OrderPreparationDTO;
+import com.tn.maktba.exceptions.InsufficientStockException;
+import com.tn.maktba.model.order.OrderStatus;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.model.user.UserEntity;
+import com.tn.maktba.repository.OrderRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.product.ProductCache;
+import com.tn.maktba.service.stock.StockReservationServiceImpl;
+import com.tn.maktba.util.ConflictRetry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({TestFixtures.class, OrderServiceImpl.class, OrderEventServiceImpl.class, StockReservationServiceImpl.class,
+        ConflictRetry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PrepareOrderConcurrencyTest {
+
+    private static final int PREPARERS = 64;
+    private static final int BATCHES = 8;
+
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void parallelPreparersNeverOversell() throws Exception {
+        UserEntity user = fixtures.saveUser("11111111");
+        Product pen = fixtures.saveProduct("Pen", 40);
+        Product notebook = fixtures.saveProduct("Notebook", 50);
+
+        // Each order needs 1 pen and 2 notebooks, so notebooks run out after 25 orders. Half of the
+        // orders list their lines in the opposite order to exercise lock ordering.
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < PREPARERS; i++) {
+            orderIds.add(i % 2 == 0
+                    ? fixtures.saveOrder(user, pen, 1, notebook, 2)
+                    : fixtures.saveOrder(user, notebook, 2, pen, 1));
+        }
+
+        int prepared = prepareConcurrently(orderIds);
+
+        assertThat(prepared).isEqualTo(25);
+        assertThat(productRepository.findById(pen.getId()).orElseThrow().getQuantity()).isEqualTo(15);
+        assertThat(productRepository.findById(notebook.getId()).orElseThrow().getQuantity()).isZero();
+        assertThat(orderRepository.findAllById(orderIds))
+                .filteredOn(order -> order.getStatus() == OrderStatus.PROCESSED)
+                .hasSize(25);
+    }
+
+    @Test
+    void sameOrderIsPreparedOnlyOnce() throws Exception {
+        UserEntity user = fixtures.saveUser("22222222");
+        Product ruler = fixtures.saveProduct("Ruler", 100);
+        Product eraser = fixtures.saveProduct("Eraser", 100);
+        Long orderId = fixtures.saveOrder(user, ruler, 3, eraser, 4);
+
+        List<Long> sameOrder = new ArrayList<>();
+        for (int i = 0; i < PREPARERS; i++) {
+            sameOrder.add(orderId);
+        }
+
+        int prepared = prepareConcurrently(sameOrder);
+
+        assertThat(prepared).isEqualTo(1);
+        assertThat(productRepository.findById(ruler.getId()).orElseThrow().getQuantity()).isEqualTo(97);
+        assertThat(productRepository.findById(eraser.getId()).orElseThrow().getQuantity()).isEqualTo(96);
+    }
+
+    @Test
+    void batchReportsEachOutcomeAndServesEarlierOrdersFirst() {
+        UserEntity user = fixtures.saveUser("33333333");
+        Product pen = fixtures.saveProduct("Batch pen", 5);
+        Product eraser = fixtures.saveProduct("Batch eraser", 10);
+        Product ruler = fixtures.saveProduct("Batch ruler", 10);
+        Long first = fixtures.saveOrder(user, pen, 3, eraser, 1);
+        Long second = fixtures.saveOrder(user, pen, 3, eraser, 1);
+        Long processed = fixtures.saveOrder(user, ruler, 1, eraser, 1);
+        Long last = fixtures.saveOrder(user, ruler, 2, eraser, 2);
+        orderService.prepareOrder(processed);
+        Long missing = last + 1_000_000;
+
+        List<OrderPreparationDTO> results = prepareBatch(List.of(first, second, processed, missing, last));
+
+        assertThat(results).extracting(OrderPreparationDTO::getOrderId)
+                .containsExactly(first, second, processed, missing, last);
+        assertThat(results).extracting(OrderPreparationDTO::getOutcome).containsExactly(
+                OrderPreparationDTO.Outcome.PREPARED,
+                OrderPreparationDTO.Outcome.INSUFFICIENT_STOCK,
+                OrderPreparationDTO.Outcome.ALREADY_PROCESSED,
+                OrderPreparationDTO.Outcome.NOT_FOUND,
+                OrderPreparationDTO.Outcome.PREPARED);
+        // The first order took 3 of the 5 pens, so the second is short even though the batch started with 5.
+        assertThat(results.get(1).getShortages()).singleElement().satisfies(shortage -> {
+            assertThat(shortage.productId()).isEqualTo(pen.getId());
+            assertThat(shortage.requested()).isEqualTo(3);
+            assertThat(shortage.available()).isEqualTo(2);
+        });
+        assertThat(results.get(0).getOrder().getStatus()).isEqualTo(OrderStatus.PROCESSED);
+
+        assertThat(productRepository.findById(pen.getId()).orElseThrow().getQuantity()).isEqualTo(2);
+        assertThat(productRepository.findById(eraser.getId()).orElseThrow().getQuantity()).isEqualTo(6);
+        assertThat(productRepository.findById(ruler.getId()).orElseThrow().getQuantity()).isEqualTo(7);
+        assertThat(orderRepository.findById(first).orElseThrow().getStatus()).isEqualTo(OrderStatus.PROCESSED);
+        assertThat(orderRepository.findById(second).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(orderRepository.findById(last).orElseThrow().getStatus()).isEqualTo(OrderStatus.PROCESSED);
+    }
+
+    @Test
+    void overlappingBatchesNeverOversell() throws Exception {
+        UserEntity user = fixtures.saveUser("44444444");
+        Product pen = fixtures.saveProduct("Shared pen", 100);
+        Product notebook = fixtures.saveProduct("Shared notebook", 50);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            orderIds.add(fixtures.saveOrder(user, pen, 1, notebook, 2));
+        }
+
+        // Every batch overlaps the others and lists the orders in a different order.
+        ExecutorService executor = Executors.newFixedThreadPool(BATCHES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<OrderPreparationDTO> results = new ArrayList<>();
+        try {
+            List<Future<List<OrderPreparationDTO>>> futures = new ArrayList<>();
+            for (int i = 0; i < BATCHES; i++) {
+                List<Long> batch = new ArrayList<>(orderIds);
+                Collections.shuffle(batch, new Random(i));
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return prepareBatch(batch);
+                }));
+            }
+            start.countDown();
+            for (Future<List<OrderPreparationDTO>> future : futures) {
+                results.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(results).filteredOn(result -> result.getOutcome() == OrderPreparationDTO.Outcome.PREPARED)
+                .hasSize(25)
+                .extracting(OrderPreparationDTO::getOrderId)
+                .doesNotHaveDuplicates();
+        assertThat(productRepository.findById(notebook.getId()).orElseThrow().getQuantity()).isZero();
+        assertThat(productRepository.findById(pen.getId()).orElseThrow().getQuantity()).isEqualTo(75);
+        assertThat(orderRepository.findAllById(orderIds))
+                .filteredOn(order -> order.getStatus() == OrderStatus.PROCESSED)
+                .hasSize(25);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<OrderPreparationDTO> prepareBatch(List<Long> orderIds) {
+        ResponseEntity<?> response = orderService.prepareOrders(orderIds);
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        return (List<OrderPreparationDTO>) response.getBody();
+    }
+
+    private int prepareConcurrently(List<Long> orderIds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PREPARERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Long orderId : orderIds) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return orderService.prepareOrder(orderId).getStatusCode().is2xxSuccessful();
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int prepared = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(60, TimeUnit.SECONDS)) {
+                    prepared++;
+                }
+            }
+            return prepared;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
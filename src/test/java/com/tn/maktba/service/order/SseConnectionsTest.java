@@ -0,0 +1,133 @@
+package com.tn.maktba.service.order;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+class SseConnectionsTest {
+
+    private static final int BUFFER_SIZE = 4;
+
+    private final BlockingQueue<SseEmitter> emitters = new ArrayBlockingQueue<>(4);
+    private final SseConnections connections = new SseConnections("sse-test", emitters::remove, BUFFER_SIZE, 2);
+
+    @AfterEach
+    void close() {
+        connections.close();
+    }
+
+    @Test
+    void broadcastDoesNotWaitForABlockedClientAndDropsItAtBufferSize() throws Exception {
+        RecordingEmitter blocked = new RecordingEmitter(true);
+        RecordingEmitter healthy = new RecordingEmitter(false);
+        emitters.add(blocked);
+        emitters.add(healthy);
+        connections.open().start(null);
+        connections.open().start(null);
+
+        connections.broadcast(event(1));
+        assertThat(blocked.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(healthy.received.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+
+        // The blocked client's sender holds event 1; the next BUFFER_SIZE events fill its buffer and
+        // the one after drops it. The healthy client keeps up with every event.
+        assertTimeout(Duration.ofSeconds(1), () -> {
+            for (int id = 2; id <= 10; id++) {
+                connections.broadcast(event(id));
+                assertThat(connections.size()).isEqualTo(id <= 1 + BUFFER_SIZE ? 2 : 1);
+                assertThat(healthy.received.tryAcquire(1, TimeUnit.SECONDS)).isTrue();
+            }
+        });
+        assertThat(blocked.completedBy).isEmpty();
+
+        blocked.release.countDown();
+
+        assertThat(blocked.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(blocked.completedBy).singleElement().asString().startsWith("sse-test-");
+        assertThat(blocked.ids()).containsExactly("1");
+        assertThat(healthy.ids()).containsExactly("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+        assertThat(healthy.completedBy).isEmpty();
+    }
+
+    @Test
+    void connectionOverflowingBeforeItStartsIsCompletedUnsent() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(false);
+        emitters.add(emitter);
+        SseConnections.Connection connection = connections.open();
+
+        for (int id = 1; id <= BUFFER_SIZE + 1; id++) {
+            connections.broadcast(event(id));
+        }
+        connection.start(SseConnections.Event.of(null, "snapshot", "[]"));
+
+        assertThat(connections.isEmpty()).isTrue();
+        assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(emitter.completedBy).singleElement().asString().startsWith("sse-test-");
+        assertThat(emitter.ids()).isEmpty();
+    }
+
+    private static SseConnections.Event event(int id) {
+        return SseConnections.Event.of(String.valueOf(id), "CREATED", "{}");
+    }
+
+    /**
+     * Records what is sent and who completes it. A blocking emitter holds its first send until
+     * released, like a client that stopped reading.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Semaphore received = new Semaphore(0);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final List<String> completedBy = new CopyOnWriteArrayList<>();
+        private final boolean blocking;
+
+        RecordingEmitter(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            if (blocking) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            sent.add(builder.build().stream()
+                    .map(part -> String.valueOf(part.getData()))
+                    .collect(Collectors.joining()));
+            received.release();
+        }
+
+        @Override
+        public void complete() {
+            completedBy.add(Thread.currentThread().getName());
+            completed.countDown();
+        }
+
+        List<String> ids() {
+            return sent.stream()
+                    .map(text -> text.substring(text.indexOf("id:") + 3, text.indexOf('\n')))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.tn.maktba.service.product;
+
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductDTOMapper;
+import com.tn.maktba.dto.product.ProductRequestDTO;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.repository.CategoryRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.category.CategoryRegistry;
+import com.tn.maktba.util.ConflictRetry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ProductServiceImpl.class, CategoryRegistry.class, ProductDTOMapper.class, ConflictRetry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductPriceTest {
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private ProductSearchIndex productSearchIndex;
+
+    @MockBean
+    private ProductImageUploader productImageUploader;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        // Shared with the other test contexts, see ProductUpdateConflictTest.
+        entityManagerFactory.getCache().evictAll();
+        category = categoryRepository.save(Category.builder().name("Atlases").build());
+        categoryRegistry.reload();
+    }
+
+    @Test
+    void pricesAreStoredWithTwoDecimals() throws Exception {
+        ResponseEntity<?> response = productService.createProduct(request("Atlas", "12.500"));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        Long id = ((ProductDTO) response.getBody()).getId();
+        assertThat(productRepository.findById(id).orElseThrow().getPrice()).isEqualTo(new BigDecimal("12.50"));
+    }
+
+    @Test
+    void pricesTheColumnCannotHoldAreRefused() throws Exception {
+        long before = productRepository.count();
+
+        for (String price : new String[]{"12.345", "-1.00", "12345678901"}) {
+            assertThat(productService.createProduct(request("Globe " + price, price)).getStatusCode().value())
+                    .as(price)
+                    .isEqualTo(400);
+        }
+
+        assertThat(productRepository.count()).isEqualTo(before);
+    }
+
+    @Test
+    void missingPriceIsRefused() throws Exception {
+        ProductDTO created = (ProductDTO) productService.createProduct(request("Chart", "4.00")).getBody();
+        long before = productRepository.count();
+
+        assertThat(productService.createProduct(request("Blank chart", null)).getStatusCode().value())
+                .isEqualTo(400);
+        assertThat(productService.updateProduct(created.getId(), request("Chart", null)).getStatusCode().value())
+                .isEqualTo(400);
+
+        assertThat(productRepository.count()).isEqualTo(before);
+        assertThat(productRepository.findById(created.getId()).orElseThrow().getPrice())
+                .isEqualTo(new BigDecimal("4.00"));
+    }
+
+    @Test
+    void updateWithTooManyDecimalsLeavesTheProductAlone() throws Exception {
+        ProductDTO created = (ProductDTO) productService.createProduct(request("Map", "3.00")).getBody();
+
+        ResponseEntity<?> response = productService.updateProduct(created.getId(), request("Map", "2.999"));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(400);
+        assertThat(productRepository.findById(created.getId()).orElseThrow().getPrice())
+                .isEqualTo(new BigDecimal("3.00"));
+    }
+
+    private ProductRequestDTO request(String name, String price) {
+        ProductRequestDTO request = new ProductRequestDTO();
+        request.setName(name);
+        request.setPrice(price == null ? null : new BigDecimal(price));
+        request.setQuantity(5);
+        request.setCategoryId(category.getId());
+        return request;
+    }
+}
@@ -0,0 +1,110 @@
+package com.tn.maktba.service.product;
+
+import com.tn.maktba.dto.product.ProductDTO;
+import com.tn.maktba.dto.product.ProductDTOMapper;
+import com.tn.maktba.dto.product.ProductRequestDTO;
+import com.tn.maktba.model.category.Category;
+import com.tn.maktba.model.product.Product;
+import com.tn.maktba.repository.CategoryRepository;
+import com.tn.maktba.repository.ProductRepository;
+import com.tn.maktba.service.category.CategoryRegistry;
+import com.tn.maktba.util.ConflictRetry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@Import({ProductServiceImpl.class, CategoryRegistry.class, ProductDTOMapper.class, ConflictRetry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductUpdateConflictTest {
+
+    @MockBean
+    private ProductCache productCache;
+
+    @MockBean
+    private ProductSearchIndex productSearchIndex;
+
+    @MockBean
+    private ProductImageUploader productImageUploader;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void evictSecondLevelCache() {
+        // The cache is shared by every test context in the JVM, each with its own database, so it may
+        // hold another context's product under the same id.
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void updateFromAStaleVersionIsRefusedWithTheCurrentProduct() throws Exception {
+        Category category = categoryRepository.save(Category.builder().name("Novels").build());
+        categoryRegistry.reload();
+        Product product = productRepository.save(Product.builder()
+                .name("Atlas")
+                .price(new BigDecimal("10.00"))
+                .quantity(5)
+                .category(category)
+                .build());
+        Long readVersion = product.getVersion();
+
+        ResponseEntity<?> first = productService.updateProduct(product.getId(),
+                request("Atlas, 2nd edition", "12.00", category, readVersion));
+        ResponseEntity<?> second = productService.updateProduct(product.getId(),
+                request("Atlas (used)", "4.00", category, readVersion));
+
+        assertThat(first.getStatusCode().value()).isEqualTo(200);
+        ProductDTO updated = (ProductDTO) first.getBody();
+        assertThat(updated.getVersion()).isEqualTo(readVersion + 1);
+
+        assertThat(second.getStatusCode().value()).isEqualTo(409);
+        ProductDTO current = (ProductDTO) ((Map<?, ?>) second.getBody()).get("current");
+        assertThat(current.getName()).isEqualTo("Atlas, 2nd edition");
+        assertThat(current.getVersion()).isEqualTo(updated.getVersion());
+
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertThat(stored.getName()).isEqualTo("Atlas, 2nd edition");
+        assertThat(stored.getPrice()).isEqualByComparingTo("12.00");
+        assertThat(stored.getVersion()).isEqualTo(updated.getVersion());
+        // Only the committed update is reindexed.
+        verify(productSearchIndex, times(1)).index(any());
+    }
+
+    private static ProductRequestDTO request(String name, String price, Category category, Long version) {
+        ProductRequestDTO request = new ProductRequestDTO();
+        request.setName(name);
+        request.setPrice(new BigDecimal(price));
+        request.setQuantity(5);
+        request.setCategoryId(category.getId());
+        request.setVersion(version);
+        return request;
+    }
+}
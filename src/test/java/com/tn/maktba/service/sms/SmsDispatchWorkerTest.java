@@ -0,0 +1,103 @@
+package com.tn.maktba.service.sms;
+
+import com.tn.maktba.model.sms.SmsDispatch;
+import com.tn.maktba.model.sms.SmsDispatchStatus;
+import com.tn.maktba.repository.SmsDispatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import({SmsDispatchServiceImpl.class, SmsDispatchWorker.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "sms.dispatch.max-attempts=3",
+        "sms.dispatch.initial-backoff=0s",
+        "sms.dispatch.rate-limit.max-per-number=2"
+})
+class SmsDispatchWorkerTest {
+
+    @MockBean
+    private SmsService smsService;
+
+    @Autowired
+    private SmsDispatchService smsDispatchService;
+
+    @Autowired
+    private SmsDispatchWorker smsDispatchWorker;
+
+    @Autowired
+    private SmsDispatchRepository smsDispatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void clearQueue() {
+        smsDispatchRepository.deleteAll();
+    }
+
+    @Test
+    void sendsQueuedMessageOnceCommitted() {
+        enqueue("20000001", "code 123456");
+
+        smsDispatchWorker.dispatchDue();
+        smsDispatchWorker.dispatchDue();
+
+        verify(smsService, times(1)).sendSms("20000001", "code 123456");
+        SmsDispatch dispatch = smsDispatchRepository.findAll().get(0);
+        assertThat(dispatch.getStatus()).isEqualTo(SmsDispatchStatus.SENT);
+        assertThat(dispatch.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void retriesFailedSendsThenDeadLetters() {
+        doThrow(new RuntimeException("provider unavailable")).when(smsService).sendSms(anyString(), anyString());
+        enqueue("20000002", "code 654321");
+
+        smsDispatchWorker.dispatchDue();
+        assertThat(smsDispatchRepository.findAll().get(0).getStatus()).isEqualTo(SmsDispatchStatus.PENDING);
+        smsDispatchWorker.dispatchDue();
+        smsDispatchWorker.dispatchDue();
+        smsDispatchWorker.dispatchDue();
+
+        verify(smsService, times(3)).sendSms("20000002", "code 654321");
+        SmsDispatch dispatch = smsDispatchRepository.findAll().get(0);
+        assertThat(dispatch.getStatus()).isEqualTo(SmsDispatchStatus.DEAD);
+        assertThat(dispatch.getAttempts()).isEqualTo(3);
+        assertThat(dispatch.getLastError()).isEqualTo("provider unavailable");
+    }
+
+    @Test
+    void postponesMessagesOverThePerNumberLimit() {
+        for (int i = 0; i < 3; i++) {
+            enqueue("20000003", "code " + i);
+        }
+
+        smsDispatchWorker.dispatchDue();
+
+        verify(smsService, times(2)).sendSms(eq("20000003"), anyString());
+        assertThat(smsDispatchRepository.findAll())
+                .filteredOn(dispatch -> dispatch.getStatus() == SmsDispatchStatus.PENDING)
+                .singleElement()
+                .satisfies(dispatch -> assertThat(dispatch.getNextAttemptAt()).isAfter(Instant.now()));
+    }
+
+    private void enqueue(String phoneNumber, String message) {
+        transactionTemplate.executeWithoutResult(status -> smsDispatchService.enqueue(phoneNumber, message));
+    }
+}